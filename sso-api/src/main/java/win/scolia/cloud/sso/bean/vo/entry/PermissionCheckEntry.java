@@ -0,0 +1,56 @@
+package win.scolia.cloud.sso.bean.vo.entry;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * 批量检查权限
+ */
+public class PermissionCheckEntry {
+
+    // 被检查的用户, 为空时检查当前用户
+    private String userName;
+
+    // 需要检查的权限
+    @NotNull(message = "权限列表不能为空")
+    @Size(max = 1000, message = "一次最多检查1000个权限")
+    private List<String> permissions;
+
+    // 需要检查的角色, 可以为空
+    @Size(max = 1000, message = "一次最多检查1000个角色")
+    private List<String> roles;
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public List<String> getPermissions() {
+        return permissions;
+    }
+
+    public void setPermissions(List<String> permissions) {
+        this.permissions = permissions;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    public void setRoles(List<String> roles) {
+        this.roles = roles;
+    }
+
+    @Override
+    public String toString() {
+        return "PermissionCheckEntry{" +
+                "userName='" + userName + '\'' +
+                ", permissions=" + permissions +
+                ", roles=" + roles +
+                '}';
+    }
+}
@@ -0,0 +1,46 @@
+package win.scolia.cloud.sso.bean.vo.export;
+
+/**
+ * 批量检查权限的结果, 与请求中的顺序一一对应
+ */
+public class PermissionCheckExport {
+
+    private String userName;
+
+    private boolean[] permissions;
+
+    private boolean[] roles;
+
+    public PermissionCheckExport() {
+    }
+
+    public PermissionCheckExport(String userName, boolean[] permissions, boolean[] roles) {
+        this.userName = userName;
+        this.permissions = permissions;
+        this.roles = roles;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public boolean[] getPermissions() {
+        return permissions;
+    }
+
+    public void setPermissions(boolean[] permissions) {
+        this.permissions = permissions;
+    }
+
+    public boolean[] getRoles() {
+        return roles;
+    }
+
+    public void setRoles(boolean[] roles) {
+        this.roles = roles;
+    }
+}
@@ -0,0 +1,70 @@
+package win.scolia.cloud.sso.bean.vo.export;
+
+/**
+ * 用户的一个登录会话
+ */
+public class SessionExport {
+
+    // 会话的不透明标识, 为会话id的摘要, 用于结束该会话, 不暴露真实的会话id
+    private String handle;
+
+    private Long creationTime;
+
+    private Long lastAccessedTime;
+
+    // 最大空闲时间, 单位秒
+    private Integer maxInactiveInterval;
+
+    // 是否为发起请求的会话
+    private boolean current;
+
+    public SessionExport() {
+    }
+
+    public SessionExport(String handle, Long creationTime, Long lastAccessedTime, Integer maxInactiveInterval) {
+        this.handle = handle;
+        this.creationTime = creationTime;
+        this.lastAccessedTime = lastAccessedTime;
+        this.maxInactiveInterval = maxInactiveInterval;
+    }
+
+    public String getHandle() {
+        return handle;
+    }
+
+    public void setHandle(String handle) {
+        this.handle = handle;
+    }
+
+    public Long getCreationTime() {
+        return creationTime;
+    }
+
+    public void setCreationTime(Long creationTime) {
+        this.creationTime = creationTime;
+    }
+
+    public Long getLastAccessedTime() {
+        return lastAccessedTime;
+    }
+
+    public void setLastAccessedTime(Long lastAccessedTime) {
+        this.lastAccessedTime = lastAccessedTime;
+    }
+
+    public Integer getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    public void setMaxInactiveInterval(Integer maxInactiveInterval) {
+        this.maxInactiveInterval = maxInactiveInterval;
+    }
+
+    public boolean isCurrent() {
+        return current;
+    }
+
+    public void setCurrent(boolean current) {
+        this.current = current;
+    }
+}
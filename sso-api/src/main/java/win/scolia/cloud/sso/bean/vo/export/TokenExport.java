@@ -0,0 +1,46 @@
+package win.scolia.cloud.sso.bean.vo.export;
+
+/**
+ * 访问令牌
+ */
+public class TokenExport {
+
+    private String accessToken;
+
+    private String tokenType = "Bearer";
+
+    // 有效时间, 单位秒
+    private long expiresIn;
+
+    public TokenExport() {
+    }
+
+    public TokenExport(String accessToken, long expiresIn) {
+        this.accessToken = accessToken;
+        this.expiresIn = expiresIn;
+    }
+
+    public String getAccessToken() {
+        return accessToken;
+    }
+
+    public void setAccessToken(String accessToken) {
+        this.accessToken = accessToken;
+    }
+
+    public String getTokenType() {
+        return tokenType;
+    }
+
+    public void setTokenType(String tokenType) {
+        this.tokenType = tokenType;
+    }
+
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+
+    public void setExpiresIn(long expiresIn) {
+        this.expiresIn = expiresIn;
+    }
+}
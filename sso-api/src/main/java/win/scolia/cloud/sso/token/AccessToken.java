@@ -0,0 +1,97 @@
+package win.scolia.cloud.sso.token;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 访问令牌中携带的信息, 下游服务验证签名后可以直接使用, 不需要访问sso
+ */
+public class AccessToken {
+
+    // 令牌的唯一标识, 用于吊销
+    private final String tokenId;
+
+    private final Long userId;
+
+    private final String userName;
+
+    private final Set<String> roles;
+
+    // 权限集合的版本, 权限变化后不同
+    private final long permissionVersion;
+
+    // 最初登录的时间, 刷新后保持不变, 用于限制刷新的期限, 单位秒
+    private final long authenticatedAt;
+
+    // 签发时间, 单位秒
+    private final long issuedAt;
+
+    // 过期时间, 单位秒
+    private final long expiresAt;
+
+    public AccessToken(String tokenId, Long userId, String userName, Set<String> roles, long permissionVersion,
+                       long authenticatedAt, long issuedAt, long expiresAt) {
+        this.tokenId = tokenId;
+        this.userId = userId;
+        this.userName = userName;
+        this.roles = roles == null ? Collections.emptySet() : Collections.unmodifiableSet(roles);
+        this.permissionVersion = permissionVersion;
+        this.authenticatedAt = authenticatedAt;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public Set<String> getRoles() {
+        return roles;
+    }
+
+    public long getPermissionVersion() {
+        return permissionVersion;
+    }
+
+    public long getAuthenticatedAt() {
+        return authenticatedAt;
+    }
+
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * @param now 当前时间, 单位秒
+     * @return 是否已过期
+     */
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "AccessToken{" +
+                "tokenId='" + tokenId + '\'' +
+                ", userId=" + userId +
+                ", userName='" + userName + '\'' +
+                ", roles=" + roles +
+                ", permissionVersion=" + permissionVersion +
+                ", authenticatedAt=" + authenticatedAt +
+                ", issuedAt=" + issuedAt +
+                ", expiresAt=" + expiresAt +
+                '}';
+    }
+}
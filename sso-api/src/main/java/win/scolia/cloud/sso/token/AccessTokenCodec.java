@@ -0,0 +1,134 @@
+package win.scolia.cloud.sso.token;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 访问令牌的签名和验证, 只依赖jdk, 下游服务使用相同的密钥即可在本地验证
+ * 格式: base64url(载荷) + "." + base64url(HmacSHA256(载荷)), 载荷为紧凑的二进制格式
+ */
+public class AccessTokenCodec {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final byte VERSION = 2;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+
+    /**
+     * @param secret 签名密钥, 签发方和验证方必须相同
+     */
+    public AccessTokenCodec(String secret) {
+        if (secret == null || secret.length() < 32) {
+            throw new IllegalArgumentException("Token secret must be at least 32 characters");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    /**
+     * 签发令牌
+     * @param token 令牌信息
+     * @return 令牌字符串
+     */
+    public String encode(AccessToken token) {
+        byte[] payload = this.write(token);
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(this.sign(payload));
+    }
+
+    /**
+     * 验证签名和过期时间
+     * @param value 令牌字符串
+     * @param now 当前时间, 单位秒
+     * @return 令牌信息, 格式错误/签名错误/已过期时返回null
+     */
+    public AccessToken decode(String value, long now) {
+        if (value == null) {
+            return null;
+        }
+        int index = value.indexOf('.');
+        if (index <= 0 || index != value.lastIndexOf('.')) {
+            return null;
+        }
+        try {
+            byte[] payload = DECODER.decode(value.substring(0, index));
+            byte[] signature = DECODER.decode(value.substring(index + 1));
+            if (!MessageDigest.isEqual(signature, this.sign(payload))) {
+                return null;
+            }
+            AccessToken token = this.read(payload);
+            return token == null || token.isExpired(now) ? null : token;
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] write(AccessToken token) {
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+             DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeUTF(token.getTokenId());
+            out.writeLong(token.getUserId() == null ? -1L : token.getUserId());
+            out.writeUTF(token.getUserName());
+            out.writeShort(token.getRoles().size());
+            for (String role : token.getRoles()) {
+                out.writeUTF(role);
+            }
+            out.writeLong(token.getPermissionVersion());
+            out.writeLong(token.getAuthenticatedAt());
+            out.writeLong(token.getIssuedAt());
+            out.writeLong(token.getExpiresAt());
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private AccessToken read(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                return null;
+            }
+            String tokenId = in.readUTF();
+            long userId = in.readLong();
+            String userName = in.readUTF();
+            int size = in.readUnsignedShort();
+            Set<String> roles = new HashSet<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                roles.add(in.readUTF());
+            }
+            long permissionVersion = in.readLong();
+            long authenticatedAt = in.readLong();
+            long issuedAt = in.readLong();
+            long expiresAt = in.readLong();
+            return new AccessToken(tokenId, userId < 0 ? null : userId, userName, roles, permissionVersion,
+                    authenticatedAt, issuedAt, expiresAt);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package win.scolia.cloud.sso.actuator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.mvc.AbstractMvcEndpoint;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import win.scolia.cloud.sso.util.cache.BaseCacheUtils;
+import win.scolia.cloud.sso.util.cache.CacheStats;
+import win.scolia.cloud.sso.util.cache.LatencyHistogram;
+
+import java.util.List;
+
+/**
+ * 以 prometheus 文本格式输出各个缓存的统计信息, 路径为 /cache-metrics
+ */
+@Component
+@ConfigurationProperties(prefix = "endpoints.cache-metrics")
+public class CacheMetricsEndpoint extends AbstractMvcEndpoint {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Autowired
+    private List<BaseCacheUtils<?>> caches;
+
+    public CacheMetricsEndpoint() {
+        super("/cache-metrics", true);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, produces = CONTENT_TYPE)
+    @ResponseBody
+    public String invoke() {
+        StringBuilder builder = new StringBuilder();
+        this.writeCounter(builder, "sso_cache_near_hits_total", "Near cache hits", CacheStats::getNearHits);
+        this.writeCounter(builder, "sso_cache_hits_total", "Redis cache hits", CacheStats::getHits);
+        this.writeCounter(builder, "sso_cache_missing_hits_total", "Missing marker hits", CacheStats::getMissingHits);
+        this.writeCounter(builder, "sso_cache_misses_total", "Cache misses", CacheStats::getMisses);
+        this.writeCounter(builder, "sso_cache_load_failures_total", "Failed loads on miss", CacheStats::getLoadFailures);
+        this.writeCounter(builder, "sso_cache_early_refreshes_total", "Background refreshes before expiry",
+                CacheStats::getEarlyRefreshes);
+        this.writeCounter(builder, "sso_cache_evictions_total", "Single key deletions", CacheStats::getEvictions);
+        this.writeCounter(builder, "sso_cache_invalidations_total", "Whole cache invalidations", CacheStats::getInvalidations);
+        this.writeCounter(builder, "sso_cache_remote_invalidations_total", "Invalidations received from other nodes",
+                CacheStats::getRemoteInvalidations);
+        builder.append("# HELP sso_cache_hit_ratio Hit ratio including near and missing marker hits\n");
+        builder.append("# TYPE sso_cache_hit_ratio gauge\n");
+        for (BaseCacheUtils<?> cache : caches) {
+            CacheStats stats = cache.getStats();
+            builder.append("sso_cache_hit_ratio{cache=\"").append(stats.getName()).append("\"} ")
+                    .append(stats.getHitRatio()).append('\n');
+        }
+        this.writeHistogram(builder, "sso_cache_redis_seconds", "Redis call latency", true);
+        this.writeHistogram(builder, "sso_cache_load_seconds", "Load latency on miss", false);
+        return builder.toString();
+    }
+
+    private void writeCounter(StringBuilder builder, String name, String help, CounterReader reader) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(" counter\n");
+        for (BaseCacheUtils<?> cache : caches) {
+            CacheStats stats = cache.getStats();
+            builder.append(name).append("{cache=\"").append(stats.getName()).append("\"} ")
+                    .append(reader.read(stats)).append('\n');
+        }
+    }
+
+    private void writeHistogram(StringBuilder builder, String name, String help, boolean redis) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(" histogram\n");
+        double[] bounds = LatencyHistogram.getBounds();
+        for (BaseCacheUtils<?> cache : caches) {
+            CacheStats stats = cache.getStats();
+            LatencyHistogram histogram = redis ? stats.getRedisLatency() : stats.getLoadLatency();
+            long[] counts = histogram.getCumulativeCounts();
+            String label = "cache=\"" + stats.getName() + "\"";
+            for (int i = 0; i < counts.length; i++) {
+                builder.append(name).append("_bucket{").append(label).append(",le=\"")
+                        .append(i < bounds.length ? String.valueOf(bounds[i]) : "+Inf").append("\"} ")
+                        .append(counts[i]).append('\n');
+            }
+            builder.append(name).append("_sum{").append(label).append("} ").append(histogram.getSumSeconds()).append('\n');
+            builder.append(name).append("_count{").append(label).append("} ").append(counts[counts.length - 1]).append('\n');
+        }
+    }
+
+    private interface CounterReader {
+        long read(CacheStats stats);
+    }
+}
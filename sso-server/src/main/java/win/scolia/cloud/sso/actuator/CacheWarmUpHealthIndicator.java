@@ -0,0 +1,27 @@
+package win.scolia.cloud.sso.actuator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+import win.scolia.cloud.sso.service.CacheWarmUpService;
+
+/**
+ * 缓存预热结束前报告 OUT_OF_SERVICE
+ * 需要开启 eureka.client.healthcheck.enabled, 注册中心才会根据健康状态路由流量
+ */
+@Component
+public class CacheWarmUpHealthIndicator extends AbstractHealthIndicator {
+
+    @Autowired
+    private CacheWarmUpService cacheWarmUpService;
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        if (cacheWarmUpService.isFinished()) {
+            builder.up().withDetail("warmUp", "finished");
+        } else {
+            builder.outOfService().withDetail("warmUp", "running");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package win.scolia.cloud.sso.actuator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.mvc.AbstractMvcEndpoint;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import win.scolia.cloud.sso.session.SSOSessionRepository;
+import win.scolia.cloud.sso.session.SessionStats;
+
+/**
+ * 以 prometheus 文本格式输出session存储的统计信息, 路径为 /session-metrics
+ */
+@Component
+@ConfigurationProperties(prefix = "endpoints.session-metrics")
+public class SessionMetricsEndpoint extends AbstractMvcEndpoint {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Autowired
+    private SSOSessionRepository sessionRepository;
+
+    public SessionMetricsEndpoint() {
+        super("/session-metrics", true);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, produces = CONTENT_TYPE)
+    @ResponseBody
+    public String invoke() {
+        SessionStats stats = sessionRepository.getStats();
+        StringBuilder builder = new StringBuilder();
+        this.writeCounter(builder, "sso_session_touches_total", "Last access time updates", stats.getTouches());
+        this.writeCounter(builder, "sso_session_skipped_touches_total", "Last access time writes skipped",
+                stats.getSkippedTouches());
+        this.writeCounter(builder, "sso_session_piggybacked_touches_total",
+                "Skipped last access times written with attribute changes", stats.getPiggybackedTouches());
+        this.writeCounter(builder, "sso_session_saves_total", "Saves passed to redis", stats.getSaves());
+        this.writeCounter(builder, "sso_session_near_hits_total", "Sessions resolved from the near cache",
+                stats.getNearHits());
+        this.writeCounter(builder, "sso_session_near_misses_total", "Near cache misses", stats.getNearMisses());
+        return builder.toString();
+    }
+
+    private void writeCounter(StringBuilder builder, String name, String help, long value) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(" counter\n");
+        builder.append(name).append(' ').append(value).append('\n');
+    }
+}
@@ -2,6 +2,12 @@ package win.scolia.cloud.sso.autoconfigure;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @ConfigurationProperties(prefix = "sso")
 public class SSOProperties {
 
@@ -15,6 +21,14 @@ public class SSOProperties {
 
     private Page page;
 
+    private WarmUp warmUp = new WarmUp();
+
+    private Authorization authorization = new Authorization();
+
+    private Token token = new Token();
+
+    private Session session = new Session();
+
     public Register getRegister() {
         return register;
     }
@@ -55,6 +69,38 @@ public class SSOProperties {
         this.page = page;
     }
 
+    public WarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(WarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public Authorization getAuthorization() {
+        return authorization;
+    }
+
+    public void setAuthorization(Authorization authorization) {
+        this.authorization = authorization;
+    }
+
+    public Token getToken() {
+        return token;
+    }
+
+    public void setToken(Token token) {
+        this.token = token;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public void setSession(Session session) {
+        this.session = session;
+    }
+
 
 
     /**
@@ -94,6 +140,41 @@ public class SSOProperties {
         private String prefix = "SSO";
         private int expire = 2592000;
         private boolean flushExpire = true;
+        /**
+         * 刷新过期时间的阈值, 单位秒, 剩余时间不小于该值时读取不刷新, 小于等于0时每次读取都刷新
+         */
+        private int flushThreshold = 0;
+        /**
+         * 写入缓存时使用的格式, 读取时json和二进制都兼容
+         */
+        private Codec codec = Codec.JSON;
+        /**
+         * 空值标记的过期时间, 单位秒
+         */
+        private int missingExpire = 60;
+        /**
+         * 过期时间的随机抖动比例, 写入时在 [expire, expire * (1 + expireJitter)] 之间随机, 避免同时写入的键同时过期
+         */
+        private double expireJitter = 0;
+        /**
+         * 提前刷新的系数(XFetch), 越大越早刷新, 小于等于0时不提前刷新
+         */
+        private double refreshBeta = 1;
+        private int refreshThreads = 2;
+        private int refreshQueueSize = 1000;
+        /**
+         * 本地缓存代数的时间, 单位秒
+         */
+        private int generationRefresh = 10;
+        /**
+         * 清理旧代数键的间隔, 单位秒, 小于等于0时不清理
+         */
+        private int sweepInterval = 3600;
+        private int sweepBatchSize = 500;
+        /**
+         * 各个缓存单独的策略, 键为缓存的前缀, 例如: ROLE_PERMISSION
+         */
+        private Map<String, Policy> policies = new HashMap<>();
 
         public String getPrefix() {
             return prefix;
@@ -118,6 +199,172 @@ public class SSOProperties {
         public void setFlushExpire(boolean flushExpire) {
             this.flushExpire = flushExpire;
         }
+
+        public int getFlushThreshold() {
+            return flushThreshold;
+        }
+
+        public void setFlushThreshold(int flushThreshold) {
+            this.flushThreshold = flushThreshold;
+        }
+
+        public Codec getCodec() {
+            return codec;
+        }
+
+        public void setCodec(Codec codec) {
+            this.codec = codec;
+        }
+
+        public int getMissingExpire() {
+            return missingExpire;
+        }
+
+        public void setMissingExpire(int missingExpire) {
+            this.missingExpire = missingExpire;
+        }
+
+        public double getExpireJitter() {
+            return expireJitter;
+        }
+
+        public void setExpireJitter(double expireJitter) {
+            this.expireJitter = expireJitter;
+        }
+
+        public double getRefreshBeta() {
+            return refreshBeta;
+        }
+
+        public void setRefreshBeta(double refreshBeta) {
+            this.refreshBeta = refreshBeta;
+        }
+
+        public int getRefreshThreads() {
+            return refreshThreads;
+        }
+
+        public void setRefreshThreads(int refreshThreads) {
+            this.refreshThreads = refreshThreads;
+        }
+
+        public int getRefreshQueueSize() {
+            return refreshQueueSize;
+        }
+
+        public void setRefreshQueueSize(int refreshQueueSize) {
+            this.refreshQueueSize = refreshQueueSize;
+        }
+
+        public int getGenerationRefresh() {
+            return generationRefresh;
+        }
+
+        public void setGenerationRefresh(int generationRefresh) {
+            this.generationRefresh = generationRefresh;
+        }
+
+        public int getSweepInterval() {
+            return sweepInterval;
+        }
+
+        public void setSweepInterval(int sweepInterval) {
+            this.sweepInterval = sweepInterval;
+        }
+
+        public int getSweepBatchSize() {
+            return sweepBatchSize;
+        }
+
+        public void setSweepBatchSize(int sweepBatchSize) {
+            this.sweepBatchSize = sweepBatchSize;
+        }
+
+        public Map<String, Policy> getPolicies() {
+            return policies;
+        }
+
+        public void setPolicies(Map<String, Policy> policies) {
+            this.policies = policies;
+        }
+
+        /**
+         * 获取某个缓存的策略, 键不区分大小写, 且'-'等同于'_'
+         * @param name 缓存的前缀
+         * @return 未配置时返回默认策略
+         */
+        public Policy getPolicy(String name) {
+            for (Map.Entry<String, Policy> entry : policies.entrySet()) {
+                if (entry.getKey().replace('-', '_').equalsIgnoreCase(name)) {
+                    return entry.getValue();
+                }
+            }
+            return new Policy();
+        }
+
+        /**
+         * 缓存值的格式
+         */
+        public enum Codec {
+            JSON, BINARY
+        }
+
+        /**
+         * 单个缓存的策略
+         */
+        public static class Policy {
+            private boolean nearCache = false;
+            private int nearMaxSize = 1000;
+            private int nearExpire = 60;
+            /**
+             * 写操作后是否直接计算并写入新值, 关闭时只删除缓存, 由下一次读取加载
+             */
+            private boolean writeThrough = false;
+            /**
+             * 该缓存在redis中的过期时间(秒), 不大于0时使用全局的过期时间
+             */
+            private long expire = 0;
+
+            public boolean isNearCache() {
+                return nearCache;
+            }
+
+            public void setNearCache(boolean nearCache) {
+                this.nearCache = nearCache;
+            }
+
+            public int getNearMaxSize() {
+                return nearMaxSize;
+            }
+
+            public void setNearMaxSize(int nearMaxSize) {
+                this.nearMaxSize = nearMaxSize;
+            }
+
+            public int getNearExpire() {
+                return nearExpire;
+            }
+
+            public void setNearExpire(int nearExpire) {
+                this.nearExpire = nearExpire;
+            }
+
+            public boolean isWriteThrough() {
+                return writeThrough;
+            }
+
+            public void setWriteThrough(boolean writeThrough) {
+                this.writeThrough = writeThrough;
+            }
+
+            public long getExpire() {
+                return expire;
+            }
+
+            public void setExpire(long expire) {
+                this.expire = expire;
+            }
+        }
     }
 
     /**
@@ -149,5 +396,229 @@ public class SSOProperties {
             this.size = size;
         }
     }
-}
 
+    /**
+     * 启动时的缓存预热配置
+     */
+    public static class WarmUp {
+        private boolean enable = true;
+        /**
+         * 预热角色的最近活跃用户数量
+         */
+        private int users = 100;
+        /**
+         * 记录的最近活跃用户的最大数量
+         */
+        private int activeUsers = 1000;
+        private int batchSize = 500;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public void setEnable(boolean enable) {
+            this.enable = enable;
+        }
+
+        public int getUsers() {
+            return users;
+        }
+
+        public void setUsers(int users) {
+            this.users = users;
+        }
+
+        public int getActiveUsers() {
+            return activeUsers;
+        }
+
+        public void setActiveUsers(int activeUsers) {
+            this.activeUsers = activeUsers;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * 鉴权配置
+     */
+    public static class Authorization {
+        /**
+         * 是否使用位图模型鉴权, 关闭时使用权限前缀树
+         */
+        private boolean bitset = false;
+        /**
+         * 检查位图模型版本的间隔, 单位秒
+         */
+        private int modelRefresh = 10;
+
+        public boolean isBitset() {
+            return bitset;
+        }
+
+        public void setBitset(boolean bitset) {
+            this.bitset = bitset;
+        }
+
+        public int getModelRefresh() {
+            return modelRefresh;
+        }
+
+        public void setModelRefresh(int modelRefresh) {
+            this.modelRefresh = modelRefresh;
+        }
+    }
+
+    /**
+     * 访问令牌相关设置
+     */
+    public static class Token {
+        /**
+         * 是否在登录时签发访问令牌
+         */
+        private boolean enable = false;
+        /**
+         * 签名密钥, 下游服务使用相同的密钥验证, 至少32个字符
+         */
+        private String secret;
+        /**
+         * 令牌的有效时间, 单位秒
+         */
+        private int expire = 900;
+        /**
+         * 从登录开始可以刷新令牌的最长时间, 超过后需要重新登录, 单位秒
+         */
+        private int refreshMaxAge = 86400;
+        /**
+         * 本地吊销列表的刷新间隔, 单位秒
+         */
+        private int denylistRefresh = 5;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public void setEnable(boolean enable) {
+            this.enable = enable;
+        }
+
+        public String getSecret() {
+            return secret;
+        }
+
+        public void setSecret(String secret) {
+            this.secret = secret;
+        }
+
+        public int getExpire() {
+            return expire;
+        }
+
+        public void setExpire(int expire) {
+            this.expire = expire;
+        }
+
+        public int getRefreshMaxAge() {
+            return refreshMaxAge;
+        }
+
+        public void setRefreshMaxAge(int refreshMaxAge) {
+            this.refreshMaxAge = refreshMaxAge;
+        }
+
+        public int getDenylistRefresh() {
+            return denylistRefresh;
+        }
+
+        public void setDenylistRefresh(int denylistRefresh) {
+            this.denylistRefresh = denylistRefresh;
+        }
+    }
+
+    /**
+     * session 相关设置
+     */
+    public static class Session {
+        /**
+         * session 属性写入时使用的格式, 读取时两种格式都兼容
+         */
+        private Codec codec = Codec.JDK;
+        /**
+         * 允许jdk反序列化的包名或类名前缀
+         */
+        private List<String> whitelist = new ArrayList<>(Arrays.asList(
+                "java.lang.", "java.util.", "org.apache.shiro.", "win.scolia.cloud.sso."));
+        /**
+         * 距离上次写入的访问时间不超过 最大空闲时间 * touchRatio 时不再写回访问时间, 0表示每次都写入
+         */
+        private double touchRatio = 0;
+        /**
+         * 是否启用session的近端缓存
+         */
+        private boolean nearCache = false;
+        private int nearMaxSize = 10000;
+        /**
+         * 近端缓存的过期时间, 单位秒
+         */
+        private int nearExpire = 5;
+
+        public Codec getCodec() {
+            return codec;
+        }
+
+        public void setCodec(Codec codec) {
+            this.codec = codec;
+        }
+
+        public List<String> getWhitelist() {
+            return whitelist;
+        }
+
+        public void setWhitelist(List<String> whitelist) {
+            this.whitelist = whitelist;
+        }
+
+        public double getTouchRatio() {
+            return touchRatio;
+        }
+
+        public void setTouchRatio(double touchRatio) {
+            this.touchRatio = touchRatio;
+        }
+
+        public boolean isNearCache() {
+            return nearCache;
+        }
+
+        public void setNearCache(boolean nearCache) {
+            this.nearCache = nearCache;
+        }
+
+        public int getNearMaxSize() {
+            return nearMaxSize;
+        }
+
+        public void setNearMaxSize(int nearMaxSize) {
+            this.nearMaxSize = nearMaxSize;
+        }
+
+        public int getNearExpire() {
+            return nearExpire;
+        }
+
+        public void setNearExpire(int nearExpire) {
+            this.nearExpire = nearExpire;
+        }
+
+        public enum Codec {
+            JDK,
+            BINARY
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package win.scolia.cloud.sso.bean.entity;
+
+import java.io.Serializable;
+
+/**
+ * 角色名和权限的映射, 用于批量查询角色的权限
+ */
+public class RolePermissionName implements Serializable {
+    private static final long serialVersionUID = 2957393478626254310L;
+
+    private String roleName;
+
+    private String permission;
+
+    public String getRoleName() {
+        return roleName;
+    }
+
+    public void setRoleName(String roleName) {
+        this.roleName = roleName;
+    }
+
+    public String getPermission() {
+        return permission;
+    }
+
+    public void setPermission(String permission) {
+        this.permission = permission;
+    }
+
+    @Override
+    public String toString() {
+        return "RolePermissionName{" +
+                "roleName='" + roleName + '\'' +
+                ", permission='" + permission + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,38 @@
+package win.scolia.cloud.sso.bean.entity;
+
+import java.io.Serializable;
+
+/**
+ * 用户名和角色名的映射, 用于批量查询用户的角色
+ */
+public class UserRoleName implements Serializable {
+    private static final long serialVersionUID = -6034513585206212376L;
+
+    private String userName;
+
+    private String roleName;
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public String getRoleName() {
+        return roleName;
+    }
+
+    public void setRoleName(String roleName) {
+        this.roleName = roleName;
+    }
+
+    @Override
+    public String toString() {
+        return "UserRoleName{" +
+                "userName='" + userName + '\'' +
+                ", roleName='" + roleName + '\'' +
+                '}';
+    }
+}
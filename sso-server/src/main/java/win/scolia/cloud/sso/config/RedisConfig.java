@@ -4,8 +4,26 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import win.scolia.cloud.sso.autoconfigure.SSOProperties;
+import win.scolia.cloud.sso.bean.entity.Permission;
+import win.scolia.cloud.sso.bean.entity.Role;
+import win.scolia.cloud.sso.bean.entity.User;
+import win.scolia.cloud.sso.shiro.SSOAuthorizationInfo;
+import win.scolia.cloud.sso.util.cache.CacheInvalidator;
+import win.scolia.cloud.sso.util.cache.codec.AuthorizationInfoCodec;
+import win.scolia.cloud.sso.util.cache.codec.CacheCodec;
+import win.scolia.cloud.sso.util.cache.codec.CodecRedisSerializer;
+import win.scolia.cloud.sso.util.cache.codec.PermissionCodec;
+import win.scolia.cloud.sso.util.cache.codec.RoleCodec;
+import win.scolia.cloud.sso.util.cache.codec.StringSetCodec;
+import win.scolia.cloud.sso.util.cache.codec.UserCodec;
+
+import java.util.Set;
 
 @Configuration
 public class RedisConfig {
@@ -14,17 +32,61 @@ public class RedisConfig {
      * redisTemplate 序列化默认使用的jdkSerializeable, 存储二进制字节码, 为了可读性和跨语言性, 这里改为json
      */
     @Bean
-    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory) {
-        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+        return this.createTemplate(redisConnectionFactory, new GenericJackson2JsonRedisSerializer());
+    }
+
+    /**
+     * 以下为各缓存类型专用的 redisTemplate, 根据 sso.cache.codec 决定写入json还是二进制, 读取时两种格式都兼容
+     */
+    @Bean
+    public RedisTemplate<String, User> userRedisTemplate(RedisConnectionFactory redisConnectionFactory, SSOProperties properties) {
+        return this.createTemplate(redisConnectionFactory, this.createSerializer(new UserCodec(), properties));
+    }
+
+    @Bean
+    public RedisTemplate<String, Role> roleRedisTemplate(RedisConnectionFactory redisConnectionFactory, SSOProperties properties) {
+        return this.createTemplate(redisConnectionFactory, this.createSerializer(new RoleCodec(), properties));
+    }
+
+    @Bean
+    public RedisTemplate<String, Permission> permissionRedisTemplate(RedisConnectionFactory redisConnectionFactory, SSOProperties properties) {
+        return this.createTemplate(redisConnectionFactory, this.createSerializer(new PermissionCodec(), properties));
+    }
+
+    @Bean
+    public RedisTemplate<String, Set<String>> stringSetRedisTemplate(RedisConnectionFactory redisConnectionFactory, SSOProperties properties) {
+        return this.createTemplate(redisConnectionFactory, this.createSerializer(new StringSetCodec(), properties));
+    }
+
+    @Bean
+    public RedisTemplate<String, SSOAuthorizationInfo> authorizationRedisTemplate(RedisConnectionFactory redisConnectionFactory, SSOProperties properties) {
+        return this.createTemplate(redisConnectionFactory, this.createSerializer(new AuthorizationInfoCodec(), properties));
+    }
+
+    /**
+     * 订阅缓存失效的通知, 用于同步各节点的近端缓存. spring session 已占用 redisMessageListenerContainer 这个名字
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       CacheInvalidator cacheInvalidator) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(cacheInvalidator, new ChannelTopic(cacheInvalidator.getChannel()));
+        return container;
+    }
+
+    private <T> RedisSerializer<Object> createSerializer(CacheCodec<T> codec, SSOProperties properties) {
+        return new CodecRedisSerializer<>(codec, properties.getCache().getCodec() == SSOProperties.Cache.Codec.BINARY);
+    }
+
+    private <T> RedisTemplate<String, T> createTemplate(RedisConnectionFactory redisConnectionFactory, RedisSerializer<?> valueSerializer) {
+        RedisTemplate<String, T> redisTemplate = new RedisTemplate<>();
         redisTemplate.setConnectionFactory(redisConnectionFactory);
-        // 使用Jackson2JsonRedisSerialize 替换默认序列化
-        GenericJackson2JsonRedisSerializer genericJackson2JsonRedisSerializer = new GenericJackson2JsonRedisSerializer();
         // 设置key, value的序列化规则
         redisTemplate.setKeySerializer(new StringRedisSerializer());
-        redisTemplate.setValueSerializer(genericJackson2JsonRedisSerializer);
+        redisTemplate.setValueSerializer(valueSerializer);
         redisTemplate.afterPropertiesSet();
         return redisTemplate;
     }
 }
-
-
@@ -11,8 +11,11 @@ import org.apache.shiro.web.session.mgt.ServletContainerSessionManager;
 import org.springframework.aop.framework.autoproxy.DefaultAdvisorAutoProxyCreator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import win.scolia.cloud.sso.shiro.InterningPermissionResolver;
+import win.scolia.cloud.sso.shiro.SSOCacheManager;
 import win.scolia.cloud.sso.shiro.SSOCredentialsMatcher;
 import win.scolia.cloud.sso.shiro.SSORealm;
+import win.scolia.cloud.sso.shiro.SSORememberMeManager;
 
 @Configuration
 public class ShiroConfig {
@@ -30,13 +33,23 @@ public class ShiroConfig {
      * @param sessionManager Session管理器
      * @param realm 验证和鉴权器
      * @param matcher 密码匹配器
+     * @param resolver 权限解析器
+     * @param cacheManager 缓存管理器, 鉴权信息缓存在 AUTHORIZATION 中
+     * @param rememberMeManager 记住我管理器, 可以吊销已签发的cookie
      */
     @Bean
-    public SecurityManager securityManager(SessionManager sessionManager, SSORealm realm, SSOCredentialsMatcher matcher) {
+    public SecurityManager securityManager(SessionManager sessionManager, SSORealm realm, SSOCredentialsMatcher matcher,
+                                           InterningPermissionResolver resolver, SSOCacheManager cacheManager,
+                                           SSORememberMeManager rememberMeManager) {
         DefaultWebSecurityManager manager = new DefaultWebSecurityManager();
         realm.setCredentialsMatcher(matcher);
+        realm.setPermissionResolver(resolver);
+        realm.setAuthorizationCacheName("AUTHORIZATION");
+        realm.setAuthenticationCachingEnabled(false);
         manager.setRealm(realm);
+        manager.setCacheManager(cacheManager);
         manager.setSessionManager(sessionManager);
+        manager.setRememberMeManager(rememberMeManager);
         return manager;
     }
 
@@ -1,22 +1,37 @@
 package win.scolia.cloud.sso.config;
 
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.session.data.redis.RedisOperationsSessionRepository;
 import org.springframework.session.data.redis.config.annotation.web.http.EnableRedisHttpSession;
 import org.springframework.session.web.http.CookieSerializer;
 import org.springframework.session.web.http.DefaultCookieSerializer;
+import win.scolia.cloud.sso.autoconfigure.SSOProperties;
+import win.scolia.cloud.sso.session.SSOSessionRepository;
+import win.scolia.cloud.sso.session.SessionRedisSerializer;
+import win.scolia.cloud.sso.util.cache.NearCache;
 
 /**
  * 启用spring session
  */
 @AutoConfigureAfter(ShiroConfig.class)
 @EnableRedisHttpSession(maxInactiveIntervalInSeconds = 60 * 60 * 24 * 14)
-public class SpringSessionConfig {
+public class SpringSessionConfig implements BeanClassLoaderAware {
+
+    private static final String SESSION_CHANNEL_SUFFIX = "SESSION_INVALIDATION";
 
     @Value("${sso.cookie.max-age}")
     private Integer maxAge;
 
+    private ClassLoader classLoader;
 
     @Bean
     public CookieSerializer cookieSerializer() {
@@ -25,4 +40,38 @@ public class SpringSessionConfig {
         return serializer;
     }
 
+    /**
+     * session 属性的序列化器, bean的名称是spring session约定的, 不能修改
+     */
+    @Bean
+    public RedisSerializer<Object> springSessionDefaultRedisSerializer(SSOProperties properties) {
+        SSOProperties.Session session = properties.getSession();
+        return new SessionRedisSerializer(session.getCodec() == SSOProperties.Session.Codec.BINARY,
+                session.getWhitelist(), classLoader);
+    }
+
+    /**
+     * 包装后的session存储, 替代redis的存储被 SessionRepositoryFilter 使用
+     * 近端缓存的失效通知使用spring session已有的 redisMessageListenerContainer 订阅
+     */
+    @Bean
+    @Primary
+    public SSOSessionRepository ssoSessionRepository(RedisOperationsSessionRepository sessionRepository,
+                                                     SSOProperties properties, StringRedisTemplate stringRedisTemplate,
+                                                     @Qualifier("redisMessageListenerContainer") RedisMessageListenerContainer container) {
+        SSOProperties.Session session = properties.getSession();
+        SSOSessionRepository repository = new SSOSessionRepository(sessionRepository, session.getTouchRatio());
+        if (session.isNearCache()) {
+            String channel = String.format("%s:%s", properties.getCache().getPrefix().toUpperCase(), SESSION_CHANNEL_SUFFIX);
+            repository.enableNearCache(new NearCache<>(session.getNearMaxSize(), session.getNearExpire()),
+                    stringRedisTemplate, channel);
+            container.addMessageListener(repository, new ChannelTopic(channel));
+        }
+        return repository;
+    }
+
+    @Override
+    public void setBeanClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
 }
@@ -4,15 +4,20 @@ import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.authz.Permission;
 import org.apache.shiro.authz.annotation.RequiresUser;
+import org.apache.shiro.mgt.SecurityManager;
+import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.subject.Subject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
@@ -20,17 +25,27 @@ import win.scolia.cloud.sso.annotation.CheckEntry;
 import win.scolia.cloud.sso.bean.entity.User;
 import win.scolia.cloud.sso.bean.entity.UserSafely;
 import win.scolia.cloud.sso.bean.vo.entry.ChangePasswordEntry;
+import win.scolia.cloud.sso.bean.vo.entry.PermissionCheckEntry;
 import win.scolia.cloud.sso.bean.vo.entry.UserEntry;
+import win.scolia.cloud.sso.bean.vo.export.PermissionCheckExport;
+import win.scolia.cloud.sso.bean.vo.export.TokenExport;
 import win.scolia.cloud.sso.bean.vo.export.UserExport;
 import win.scolia.cloud.sso.exception.DuplicateUserException;
 import win.scolia.cloud.sso.service.PermissionService;
 import win.scolia.cloud.sso.service.RoleService;
+import win.scolia.cloud.sso.service.SessionService;
+import win.scolia.cloud.sso.service.TokenService;
 import win.scolia.cloud.sso.service.UserService;
+import win.scolia.cloud.sso.shiro.InterningPermissionResolver;
+import win.scolia.cloud.sso.shiro.SSOPrincipal;
+import win.scolia.cloud.sso.shiro.SSORealm;
 import win.scolia.cloud.sso.util.ResponseUtils;
 import win.scolia.cloud.sso.util.ShiroUtils;
+import win.scolia.cloud.sso.util.cache.ActiveUserUtils;
 
 import javax.validation.Valid;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -42,6 +57,8 @@ public class AccountController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AccountController.class);
 
+    private static final String BEARER_PREFIX = "Bearer ";
+
     @Autowired
     private UserService userService;
 
@@ -51,6 +68,21 @@ public class AccountController {
     @Autowired
     private PermissionService permissionService;
 
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private ActiveUserUtils activeUserUtils;
+
+    @Autowired
+    private SSORealm realm;
+
+    @Autowired
+    private InterningPermissionResolver permissionResolver;
+
     /**
      * 用户注册
      *
@@ -103,7 +135,7 @@ public class AccountController {
      *
      * @param entry         用户信息
      * @param bindingResult 数据校验的结果
-     * @return 200 登录成功, 401登录失败
+     * @return 200 登录成功, 启用访问令牌时同时返回令牌, 401登录失败
      */
     @PostMapping("login")
     @CheckEntry
@@ -112,9 +144,14 @@ public class AccountController {
             Subject subject = SecurityUtils.getSubject();
             AuthenticationToken token = new UsernamePasswordToken(entry.getUserName(), entry.getPassword(), entry.getRememberMe());
             subject.login(token);
+            sessionService.indexCurrentSession(ShiroUtils.getCurrentUserName());
+            activeUserUtils.record(entry.getUserName());
             if (LOGGER.isInfoEnabled()) {
                 LOGGER.info("Login user: {}", entry.getUserName());
             }
+            if (tokenService.isEnable()) {
+                return ResponseEntity.ok(tokenService.issue(ShiroUtils.getCurrentUser()));
+            }
             return ResponseEntity.ok().build();
         } catch (AuthenticationException e) {
             if (LOGGER.isInfoEnabled()) {
@@ -125,38 +162,96 @@ public class AccountController {
     }
 
     /**
-     * 登出
+     * 登出, 同时吊销请求中携带的访问令牌
      *
+     * @param authorization 请求头中的访问令牌
      * @return 200 成功 401 未登录
      */
     @GetMapping("logout")
     @RequiresUser
-    public ResponseEntity logout() {
+    public ResponseEntity logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
         Subject subject = SecurityUtils.getSubject();
         if (LOGGER.isInfoEnabled()) {
-            User user = (User) subject.getPrincipal();
-            LOGGER.info("User logout: {}", user.getUserName());
+            LOGGER.info("User logout: {}", ShiroUtils.getCurrentUserName());
+        }
+        String token = this.getBearerToken(authorization);
+        if (token != null) {
+            tokenService.revoke(token);
         }
         subject.logout();
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * 刷新访问令牌, 旧的令牌会被吊销
+     *
+     * @param authorization 请求头中的访问令牌
+     * @return 200 成功, 401 令牌无效/过期/已吊销, 404 未启用访问令牌
+     */
+    @PostMapping("token/refresh")
+    public ResponseEntity<TokenExport> refreshToken(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!tokenService.isEnable()) {
+            return ResponseEntity.notFound().build();
+        }
+        TokenExport export = tokenService.refresh(this.getBearerToken(authorization));
+        if (export == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Refresh token");
+        }
+        return ResponseEntity.ok(export);
+    }
+
+    /**
+     * 吊销访问令牌
+     *
+     * @param authorization 请求头中的访问令牌
+     * @return 200 成功, 401 令牌无效/过期/已吊销, 404 未启用访问令牌
+     */
+    @PostMapping("token/revoke")
+    public ResponseEntity revokeToken(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!tokenService.isEnable()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!tokenService.revoke(this.getBearerToken(authorization))) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Revoke token");
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * 获取尚未过期的已吊销令牌id, 供下游服务定期同步后在本地验证令牌
+     *
+     * @return 200 成功, 404 未启用访问令牌
+     */
+    @GetMapping("token/denylist")
+    public ResponseEntity<Set<String>> tokenDenylist() {
+        if (!tokenService.isEnable()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(tokenService.listRevoked());
+    }
+
     /**
      * 获取当前用户信息
      *
-     * @return 200 成功, 401 未登录
+     * @return 200 成功, 401 未登录/用户已被删除
      */
     @GetMapping("current")
     @RequiresUser
     public ResponseEntity current() {
         User user = ShiroUtils.getCurrentUser();
+        if (user == null) {
+            return ResponseUtils.makeAuthenticationResponseEntity("User not exist");
+        }
         UserSafely userSafely = new UserSafely();
         BeanUtils.copyProperties(user, userSafely);
         Set<String> roles = roleService.getUserRolesByUserName(userSafely.getUserName());
-        Set<String> permissions = new HashSet<>();
-        for (String roleName : roles) {
-            permissions.addAll(permissionService.getPermissionsByRoleName(roleName));
-        }
+        Set<String> permissions = permissionService.getPermissionsByUserName(userSafely.getUserName());
         UserExport vo = new UserExport(userSafely, roles, permissions);
         if (LOGGER.isInfoEnabled()) {
             LOGGER.info("User get current info: {}", user.getUserName());
@@ -165,7 +260,58 @@ public class AccountController {
     }
 
     /**
-     * 修改密码
+     * 批量检查当前用户或指定用户的权限和角色, 使用缓存的鉴权信息一次完成
+     * 检查其他用户需要 system:user:get 权限
+     *
+     * @param entry         需要检查的权限和角色
+     * @param bindingResult 数据校验的结果
+     * @return 200 成功, 400 权限或角色为空/格式错误, 401 未登录, 403 无权检查其他用户, 404 用户不存在
+     */
+    @PostMapping("permissions/check")
+    @RequiresUser
+    @CheckEntry
+    public ResponseEntity<PermissionCheckExport> checkPermissions(@RequestBody @Valid PermissionCheckEntry entry,
+                                                                  BindingResult bindingResult) {
+        // 请求中的权限不进入共享的解析缓存, 避免任意字符串占满缓存
+        List<Permission> permissions = new ArrayList<>(entry.getPermissions().size());
+        try {
+            for (String permission : entry.getPermissions()) {
+                permissions.add(permissionResolver.resolveWithoutInterning(permission));
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (entry.getRoles() != null && entry.getRoles().stream().anyMatch(role -> !StringUtils.hasText(role))) {
+            return ResponseEntity.badRequest().build();
+        }
+        Subject subject = SecurityUtils.getSubject();
+        SSOPrincipal current = ShiroUtils.getCurrentPrincipal();
+        PrincipalCollection principals;
+        String userName = current.getUserName();
+        if (entry.getUserName() == null || entry.getUserName().equalsIgnoreCase(current.getUserName())) {
+            principals = subject.getPrincipals();
+        } else {
+            if (!subject.isPermitted("system:user:get")) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            User user = userService.getUserByUserName(entry.getUserName());
+            if (user == null) {
+                return ResponseEntity.notFound().build();
+            }
+            principals = realm.createPrincipals(user);
+            userName = user.getUserName();
+        }
+        SecurityManager securityManager = SecurityUtils.getSecurityManager();
+        boolean[] permitted = securityManager.isPermitted(principals, permissions);
+        boolean[] hasRoles = entry.getRoles() == null ? new boolean[0] : securityManager.hasRoles(principals, entry.getRoles());
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("{} check permissions of {}: {}", current.getUserName(), userName, permissions.size());
+        }
+        return ResponseEntity.ok(new PermissionCheckExport(userName, permitted, hasRoles));
+    }
+
+    /**
+     * 修改密码, 成功后结束该用户所有的会话
      *
      * @param entry         用户信息
      * @param bindingResult 数据校验的结果
@@ -175,10 +321,11 @@ public class AccountController {
     @RequiresUser
     @CheckEntry
     public ResponseEntity changePassword(@RequestBody @Valid ChangePasswordEntry entry, BindingResult bindingResult) {
-        User user = ShiroUtils.getCurrentUser();
+        SSOPrincipal user = ShiroUtils.getCurrentPrincipal();
         boolean success = userService.changePasswordByOldPassword(user.getUserName(), entry.getCurrent(), entry.getTarget());
         if (success) {
-            this.logout();
+            SecurityUtils.getSubject().logout();
+            sessionService.revokeSessions(user.getUserName());
             if (LOGGER.isInfoEnabled()) {
                 LOGGER.info("Change user password: {}", user.getUserName());
             }
@@ -190,4 +337,11 @@ public class AccountController {
             return ResponseUtils.makeAuthenticationResponseEntity("password error");
         }
     }
+
+    private String getBearerToken(String authorization) {
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            return null;
+        }
+        return authorization.substring(BEARER_PREFIX.length()).trim();
+    }
 }
@@ -17,6 +17,7 @@ import win.scolia.cloud.sso.annotation.CheckEntry;
 import win.scolia.cloud.sso.bean.entity.UserSafely;
 import win.scolia.cloud.sso.bean.vo.entry.RoleEntry;
 import win.scolia.cloud.sso.bean.vo.entry.UserEntry;
+import win.scolia.cloud.sso.bean.vo.export.SessionExport;
 import win.scolia.cloud.sso.bean.vo.export.UserExport;
 import win.scolia.cloud.sso.exception.DuplicateRoleException;
 import win.scolia.cloud.sso.exception.DuplicateUserException;
@@ -24,11 +25,12 @@ import win.scolia.cloud.sso.exception.MissRoleException;
 import win.scolia.cloud.sso.exception.MissUserException;
 import win.scolia.cloud.sso.service.PermissionService;
 import win.scolia.cloud.sso.service.RoleService;
+import win.scolia.cloud.sso.service.SessionService;
 import win.scolia.cloud.sso.service.UserService;
 import win.scolia.cloud.sso.util.ShiroUtils;
 
 import javax.validation.Valid;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -52,6 +54,9 @@ public class UserController {
     @Autowired
     private PermissionService permissionService;
 
+    @Autowired
+    private SessionService sessionService;
+
     /**
      * 新增用户
      *
@@ -78,7 +83,7 @@ public class UserController {
     }
 
     /**
-     * 删除某个用户
+     * 删除某个用户, 同时结束该用户所有的会话
      *
      * @param userName 用户名
      * @return 200 成功, 404 要删除的用户不存在
@@ -88,6 +93,7 @@ public class UserController {
     public ResponseEntity<Void> deleteUser(@PathVariable("userName") String userName) {
         try {
             userService.removeUserByUserName(userName);
+            sessionService.revokeSessions(userName);
             if (LOGGER.isInfoEnabled()) {
                 LOGGER.info("{} delete user: {}", ShiroUtils.getCurrentUserName(), userName);
             }
@@ -101,7 +107,7 @@ public class UserController {
     }
 
     /**
-     * 修改用户密码
+     * 修改用户密码, 同时结束该用户所有的会话
      *
      * @param userName 用户名
      * @param entry    密码
@@ -114,6 +120,7 @@ public class UserController {
                                                  @RequestBody @Validated(UserEntry.UpdatePassword.class) UserEntry entry, BindingResult bindingResult) {
         try {
             userService.changePasswordDirectly(userName, entry.getPassword());
+            sessionService.revokeSessions(userName);
             if (LOGGER.isInfoEnabled()) {
                 LOGGER.info("{} change user password: {}", ShiroUtils.getCurrentUserName(), userName);
             }
@@ -126,6 +133,61 @@ public class UserController {
         }
     }
 
+    /**
+     * 列出某个用户所有的会话
+     *
+     * @param userName 用户名
+     * @return 200 成功
+     */
+    @GetMapping("{userName}/sessions")
+    @RequiresPermissions("system:user:get")
+    public ResponseEntity<List<SessionExport>> listSessions(@PathVariable("userName") String userName) {
+        List<SessionExport> sessions = sessionService.listSessions(userName);
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("{} list user's sessions: {}", ShiroUtils.getCurrentUserName(), userName);
+        }
+        return ResponseEntity.ok(sessions);
+    }
+
+    /**
+     * 结束某个用户所有的会话
+     *
+     * @param userName 用户名
+     * @return 200 成功
+     */
+    @DeleteMapping("{userName}/sessions")
+    @RequiresPermissions("system:user:update")
+    public ResponseEntity<Void> revokeSessions(@PathVariable("userName") String userName) {
+        int count = sessionService.revokeSessions(userName);
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("{} revoke user's sessions: {}, {}", ShiroUtils.getCurrentUserName(), userName, count);
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * 结束某个用户的一个会话
+     *
+     * @param userName 用户名
+     * @param handle   会话的不透明标识, 来自会话列表
+     * @return 200 成功, 404 会话不存在
+     */
+    @DeleteMapping("{userName}/sessions/{handle}")
+    @RequiresPermissions("system:user:update")
+    public ResponseEntity<Void> revokeSession(@PathVariable("userName") String userName,
+                                              @PathVariable("handle") String handle) {
+        if (!sessionService.revokeSession(userName, handle)) {
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("{} revoke miss user's session: {}:{}", ShiroUtils.getCurrentUserName(), userName, handle);
+            }
+            return ResponseEntity.notFound().build();
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("{} revoke user's session: {}:{}", ShiroUtils.getCurrentUserName(), userName, handle);
+        }
+        return ResponseEntity.ok().build();
+    }
+
     /**
      * 获取某个用户的信息
      *
@@ -143,10 +205,7 @@ public class UserController {
             return ResponseEntity.notFound().build();
         }
         Set<String> roles = roleService.getUserRolesByUserName(userSafely.getUserName());
-        Set<String> permissions = new HashSet<>();
-        for (String roleName : roles) {
-            permissions.addAll(permissionService.getPermissionsByRoleName(roleName));
-        }
+        Set<String> permissions = permissionService.getPermissionsByUserName(userSafely.getUserName());
         UserExport vo = new UserExport(userSafely, roles, permissions);
         if (LOGGER.isInfoEnabled()) {
             LOGGER.info("{} get user info: {}", ShiroUtils.getCurrentUserName(), userName);
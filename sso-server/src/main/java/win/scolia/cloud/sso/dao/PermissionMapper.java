@@ -4,7 +4,10 @@ import org.apache.ibatis.annotations.Param;
 import org.springframework.stereotype.Repository;
 import tk.mybatis.mapper.common.Mapper;
 import win.scolia.cloud.sso.bean.entity.Permission;
+import win.scolia.cloud.sso.bean.entity.RolePermissionName;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 @Repository
@@ -17,4 +20,27 @@ public interface PermissionMapper extends Mapper<Permission> {
      * @return 返回权限列表
      */
     Set<String> selectPermissionsByRoleName(@Param("roleName") String roleName);
+
+    /**
+     * 批量获取多个角色的权限
+     *
+     * @param roleNames 角色名称
+     * @return 角色名和权限的映射列表
+     */
+    List<RolePermissionName> selectPermissionsByRoleNames(@Param("roleNames") Collection<String> roleNames);
+
+    /**
+     * 获取拥有该权限的角色名
+     *
+     * @param permission 权限
+     * @return 角色名
+     */
+    Set<String> selectRoleNamesByPermission(@Param("permission") String permission);
+
+    /**
+     * 获取所有角色的权限, 用于预热缓存
+     *
+     * @return 角色名和权限的映射列表
+     */
+    List<RolePermissionName> selectAllRolePermissionNames();
 }
@@ -4,7 +4,10 @@ import org.apache.ibatis.annotations.Param;
 import org.springframework.stereotype.Repository;
 import tk.mybatis.mapper.common.Mapper;
 import win.scolia.cloud.sso.bean.entity.Role;
+import win.scolia.cloud.sso.bean.entity.UserRoleName;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 @Repository
@@ -16,4 +19,11 @@ public interface RoleMapper extends Mapper<Role> {
      * @return 返回角色列表
      */
     Set<String> selectUserRolesByUserName(@Param("userName") String userName);
+
+    /**
+     * 批量获取多个用户的角色
+     * @param userNames 用户名
+     * @return 用户名和角色名的映射列表
+     */
+    List<UserRoleName> selectUserRolesByUserNames(@Param("userNames") Collection<String> userNames);
 }
@@ -0,0 +1,15 @@
+package win.scolia.cloud.sso.service;
+
+public interface CacheWarmUpService {
+
+    /**
+     * 从数据库批量加载所有的角色, 权限, 角色-权限映射, 以及最近活跃用户的角色到缓存中
+     */
+    void warmUp();
+
+    /**
+     * 预热是否已经结束, 无论成功与否
+     * @return 结束时返回true
+     */
+    boolean isFinished();
+}
@@ -0,0 +1,169 @@
+package win.scolia.cloud.sso.service.Impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+import win.scolia.cloud.sso.autoconfigure.SSOProperties;
+import win.scolia.cloud.sso.bean.entity.Permission;
+import win.scolia.cloud.sso.bean.entity.Role;
+import win.scolia.cloud.sso.bean.entity.RolePermissionName;
+import win.scolia.cloud.sso.bean.entity.UserRoleName;
+import win.scolia.cloud.sso.dao.PermissionMapper;
+import win.scolia.cloud.sso.dao.RoleMapper;
+import win.scolia.cloud.sso.service.CacheWarmUpService;
+import win.scolia.cloud.sso.util.cache.ActiveUserUtils;
+import win.scolia.cloud.sso.util.cache.CacheUtils;
+import win.scolia.cloud.sso.util.cache.PermissionCacheUtils;
+import win.scolia.cloud.sso.util.cache.RoleCacheUtils;
+import win.scolia.cloud.sso.util.cache.RolePermissionCacheUtils;
+import win.scolia.cloud.sso.util.cache.UserRoleCacheUtils;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 启动后在后台预热缓存, 预热结束前健康检查为 OUT_OF_SERVICE, 注册中心不会将流量路由到该节点
+ */
+@Service
+public class CacheWarmUpServiceImpl implements CacheWarmUpService, ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheWarmUpServiceImpl.class);
+
+    @Autowired
+    private SSOProperties properties;
+
+    @Autowired
+    private RoleMapper roleMapper;
+
+    @Autowired
+    private PermissionMapper permissionMapper;
+
+    @Autowired
+    private RoleCacheUtils roleCacheUtils;
+
+    @Autowired
+    private PermissionCacheUtils permissionCacheUtils;
+
+    @Autowired
+    private RolePermissionCacheUtils rolePermissionCacheUtils;
+
+    @Autowired
+    private UserRoleCacheUtils userRoleCacheUtils;
+
+    @Autowired
+    private ActiveUserUtils activeUserUtils;
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    private volatile boolean finished = false;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!properties.getWarmUp().isEnable()) {
+            finished = true;
+            return;
+        }
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "sso-cache-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void warmUp() {
+        long start = System.currentTimeMillis();
+        try {
+            List<Role> roles = roleMapper.selectAll();
+            this.warmUpRoles(roles);
+            this.warmUpPermissions();
+            this.warmUpRolePermissions(roles);
+            this.warmUpUserRoles();
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("Cache warm up finished in {} ms", System.currentTimeMillis() - start);
+            }
+        } catch (Exception e) {
+            // 预热失败不影响服务, 缓存会在访问时加载
+            LOGGER.error("Cache warm up error", e);
+        } finally {
+            finished = true;
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    private void warmUpRoles(List<Role> roles) {
+        Map<String, Role> targets = new LinkedHashMap<>();
+        for (Role role : roles) {
+            targets.put(role.getRoleName(), role);
+        }
+        this.cacheInBatches(roleCacheUtils, targets);
+    }
+
+    private void warmUpPermissions() {
+        Map<String, Permission> permissions = new LinkedHashMap<>();
+        for (Permission permission : permissionMapper.selectAll()) {
+            permissions.put(permission.getPermission(), permission);
+        }
+        this.cacheInBatches(permissionCacheUtils, permissions);
+    }
+
+    private void warmUpRolePermissions(List<Role> roles) {
+        // 没有权限的角色也要缓存空集合
+        Map<String, Set<String>> rolePermissions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Role role : roles) {
+            rolePermissions.put(role.getRoleName(), new HashSet<>());
+        }
+        for (RolePermissionName record : permissionMapper.selectAllRolePermissionNames()) {
+            rolePermissions.computeIfAbsent(record.getRoleName(), k -> new HashSet<>()).add(record.getPermission());
+        }
+        this.cacheInBatches(rolePermissionCacheUtils, rolePermissions);
+    }
+
+    private void warmUpUserRoles() {
+        Set<String> userNames = activeUserUtils.listRecent(properties.getWarmUp().getUsers());
+        if (userNames == null || userNames.isEmpty()) {
+            return;
+        }
+        // 查询结果中没有的用户可能没有角色, 也可能已经被删除, 无法区分, 不预热, 由访问时加载
+        Map<String, Set<String>> userRoles = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (UserRoleName record : roleMapper.selectUserRolesByUserNames(userNames)) {
+            userRoles.computeIfAbsent(record.getUserName(), k -> new HashSet<>()).add(record.getRoleName());
+        }
+        this.cacheInBatches(userRoleCacheUtils, userRoles);
+    }
+
+    /**
+     * 分批写入缓存, 避免单个管道过大
+     * 只写入尚未缓存的键, 预热期间其他节点已经加载或刷新的值更新, 不能被覆盖
+     */
+    private <T> void cacheInBatches(CacheUtils<T> cacheUtils, Map<String, T> targets) {
+        int batchSize = properties.getWarmUp().getBatchSize();
+        Map<String, T> batch = new LinkedHashMap<>();
+        for (Map.Entry<String, T> entry : targets.entrySet()) {
+            batch.put(entry.getKey(), entry.getValue());
+            if (batch.size() >= batchSize) {
+                cacheUtils.multiCacheIfAbsent(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            cacheUtils.multiCacheIfAbsent(batch);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Warm up {} entries", targets.size());
+        }
+    }
+}
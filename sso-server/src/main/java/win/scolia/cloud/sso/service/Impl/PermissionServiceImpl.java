@@ -8,6 +8,7 @@ import org.springframework.transaction.annotation.Transactional;
 import win.scolia.cloud.sso.bean.entity.Permission;
 import win.scolia.cloud.sso.bean.entity.Role;
 import win.scolia.cloud.sso.bean.entity.RolePermission;
+import win.scolia.cloud.sso.bean.entity.RolePermissionName;
 import win.scolia.cloud.sso.dao.PermissionMapper;
 import win.scolia.cloud.sso.dao.RolePermissionMapper;
 import win.scolia.cloud.sso.exception.DuplicatePermissionException;
@@ -15,12 +16,25 @@ import win.scolia.cloud.sso.exception.MissPermissionException;
 import win.scolia.cloud.sso.exception.MissRoleException;
 import win.scolia.cloud.sso.service.PermissionService;
 import win.scolia.cloud.sso.service.RoleService;
+import win.scolia.cloud.sso.shiro.AuthorizationModel;
 import win.scolia.cloud.sso.util.PageUtils;
 import win.scolia.cloud.sso.util.cache.PermissionCacheUtils;
+import win.scolia.cloud.sso.util.cache.PermissionRoleCacheUtils;
 import win.scolia.cloud.sso.util.cache.RolePermissionCacheUtils;
-
+import win.scolia.cloud.sso.util.cache.UserPermissionCacheUtils;
+import win.scolia.cloud.sso.util.cache.UserRoleCacheUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
 
 @Service
 public class PermissionServiceImpl implements PermissionService {
@@ -40,6 +54,18 @@ public class PermissionServiceImpl implements PermissionService {
     @Autowired
     private RolePermissionCacheUtils rolePermissionCacheUtils;
 
+    @Autowired
+    private PermissionRoleCacheUtils permissionRoleCacheUtils;
+
+    @Autowired
+    private UserRoleCacheUtils userRoleCacheUtils;
+
+    @Autowired
+    private UserPermissionCacheUtils userPermissionCacheUtils;
+
+    @Autowired
+    private AuthorizationModel authorizationModel;
+
     @Autowired
     private PageUtils pageUtils;
 
@@ -53,6 +79,8 @@ public class PermissionServiceImpl implements PermissionService {
         record.forCreate();
         try {
             permissionMapper.insert(record);
+            permissionCacheUtils.refresh(permission, () -> this.selectPermission(permission)); // 覆盖空值标记
+            authorizationModel.invalidate();
         } catch (DuplicateKeyException e) {
             throw new DuplicatePermissionException(String.format("%s already exist", permission), e);
         }
@@ -72,7 +100,10 @@ public class PermissionServiceImpl implements PermissionService {
         record.forCreate();
         try {
             rolePermissionMapper.insert(record);
-            rolePermissionCacheUtils.delete(roleName);
+            rolePermissionCacheUtils.refresh(roleName, () -> permissionMapper.selectPermissionsByRoleName(roleName));
+            permissionRoleCacheUtils.delete(permission);
+            userPermissionCacheUtils.deleteByRoles(Collections.singleton(roleName));
+            authorizationModel.invalidate();
         } catch (DuplicateKeyException e) {
             throw new DuplicatePermissionException(e);
         }
@@ -86,13 +117,18 @@ public class PermissionServiceImpl implements PermissionService {
         if (record == null) {
             throw new MissPermissionException(String.format("%s not exist", permission));
         }
+        // 删除映射之前先取得受影响的角色
+        Set<String> roleNames = this.getRoleNamesByPermission(permission);
         // 删除权限的同时, 也删除其映射表中的相关记录
         permissionMapper.delete(record);
         RolePermission target = new RolePermission();
         target.setPermissionId(record.getPermissionId());
         rolePermissionMapper.delete(target);
         permissionCacheUtils.delete(permission);
-        rolePermissionCacheUtils.deleteAll();
+        permissionRoleCacheUtils.delete(permission);
+        rolePermissionCacheUtils.multiRefresh(roleNames, this::selectPermissionsByRoleNames); // 只刷新受影响的 角色-权限 缓存
+        userPermissionCacheUtils.deleteByRoles(roleNames);
+        authorizationModel.invalidate();
     }
 
     @Override
@@ -107,7 +143,10 @@ public class PermissionServiceImpl implements PermissionService {
         }
         RolePermission target = new RolePermission(role.getRoleId(), p.getPermissionId());
         rolePermissionMapper.delete(target);
-        rolePermissionCacheUtils.delete(roleName);
+        rolePermissionCacheUtils.refresh(roleName, () -> permissionMapper.selectPermissionsByRoleName(roleName));
+        permissionRoleCacheUtils.delete(permission);
+        userPermissionCacheUtils.deleteByRoles(Collections.singleton(roleName)); // 其他角色可能也有该权限, 只能重新计算
+        authorizationModel.invalidate();
     }
 
     @Override
@@ -120,32 +159,91 @@ public class PermissionServiceImpl implements PermissionService {
         if (np != null) {
             throw new DuplicatePermissionException(String.format("%s already exist", target));
         }
+        Set<String> roleNames = this.getRoleNamesByPermission(current);
         Permission record = new Permission(op.getPermissionId(), target);
         record.forUpdate();
         permissionMapper.updateByPrimaryKeySelective(record);
         permissionCacheUtils.delete(current);
-        rolePermissionCacheUtils.deleteAll();
+        permissionCacheUtils.refresh(target, () -> this.selectPermission(target)); // 覆盖新权限的空值标记
+        permissionRoleCacheUtils.multiDelete(Arrays.asList(current, target));
+        rolePermissionCacheUtils.multiRefresh(roleNames, this::selectPermissionsByRoleNames); // 只刷新受影响的 角色-权限 缓存
+        userPermissionCacheUtils.deleteByRoles(roleNames);
+        authorizationModel.invalidate();
     }
 
     @Override
     public Set<String> getPermissionsByRoleName(String roleName) {
-        Set<String> permissions = rolePermissionCacheUtils.get(roleName);
-        if (permissions == null) {
-            permissions = permissionMapper.selectPermissionsByRoleName(roleName);
-            rolePermissionCacheUtils.cache(roleName, permissions);
+        return rolePermissionCacheUtils.get(roleName, () -> permissionMapper.selectPermissionsByRoleName(roleName));
+    }
+
+    /**
+     * 获取拥有该权限的角色名, 用于权限变更时定位受影响的角色
+     */
+    private Set<String> getRoleNamesByPermission(String permission) {
+        return permissionRoleCacheUtils.get(permission, () -> permissionMapper.selectRoleNamesByPermission(permission));
+    }
+
+    @Override
+    public Map<String, Set<String>> getPermissionsByRoleNames(Collection<String> roleNames) {
+        return rolePermissionCacheUtils.multiGet(roleNames, this::selectPermissionsByRoleNames);
+    }
+
+    /**
+     * 一次查询多个角色的权限, 没有权限的角色对应空集合
+     */
+    private Map<String, Set<String>> selectPermissionsByRoleNames(Collection<String> roleNames) {
+        // 数据库中的角色名不区分大小写
+        Map<String, Set<String>> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String roleName : roleNames) {
+            result.put(roleName, new HashSet<>());
         }
+        for (RolePermissionName record : permissionMapper.selectPermissionsByRoleNames(roleNames)) {
+            result.get(record.getRoleName()).add(record.getPermission());
+        }
+        return result;
+    }
+
+    @Override
+    public Set<String> getPermissionsByUserName(String userName) {
+        return userPermissionCacheUtils.get(userName, () -> this.selectPermissionsByUserName(userName));
+    }
+
+    /**
+     * 计算用户的有效权限, 写入缓存之前先把用户加入 角色 -> 用户 的索引, 保证之后的变更能找到该用户
+     */
+    private Set<String> selectPermissionsByUserName(String userName) {
+        Set<String> roles = roleService.getUserRolesByUserName(userName);
+        Set<String> permissions = new HashSet<>();
+        for (Set<String> perms : this.getPermissionsByRoleNames(roles).values()) {
+            permissions.addAll(perms);
+        }
+        userRoleCacheUtils.index(userName, roles);
         return permissions;
     }
 
+    /**
+     * 权限排序后计算摘要, 与顺序无关
+     */
     @Override
-    public Permission getPermission(String permission) {
-        Permission p = permissionCacheUtils.get(permission);
-        if (p == null) {
-            Permission query = new Permission(permission);
-            p = permissionMapper.selectOne(query);
-            permissionCacheUtils.cache(permission, p);
+    public long getPermissionVersion(String userName) {
+        CRC32 crc = new CRC32();
+        Set<String> permissions = this.getPermissionsByUserName(userName);
+        if (permissions != null) {
+            for (String permission : new TreeSet<>(permissions)) {
+                crc.update(permission.getBytes(StandardCharsets.UTF_8));
+                crc.update('\n');
+            }
         }
-        return p;
+        return crc.getValue();
+    }
+
+    @Override
+    public Permission getPermission(String permission) {
+        return permissionCacheUtils.get(permission, () -> this.selectPermission(permission));
+    }
+
+    private Permission selectPermission(String permission) {
+        return permissionMapper.selectOne(new Permission(permission));
     }
 
     @Override
@@ -9,6 +9,7 @@ import win.scolia.cloud.sso.bean.entity.Role;
 import win.scolia.cloud.sso.bean.entity.RolePermission;
 import win.scolia.cloud.sso.bean.entity.UserRole;
 import win.scolia.cloud.sso.bean.entity.UserSafely;
+import win.scolia.cloud.sso.dao.PermissionMapper;
 import win.scolia.cloud.sso.dao.RoleMapper;
 import win.scolia.cloud.sso.dao.RolePermissionMapper;
 import win.scolia.cloud.sso.dao.UserRoleMapper;
@@ -17,9 +18,13 @@ import win.scolia.cloud.sso.exception.MissRoleException;
 import win.scolia.cloud.sso.exception.MissUserException;
 import win.scolia.cloud.sso.service.RoleService;
 import win.scolia.cloud.sso.service.UserService;
+import win.scolia.cloud.sso.shiro.AuthorizationModel;
 import win.scolia.cloud.sso.util.PageUtils;
+import win.scolia.cloud.sso.util.cache.AuthorizationCacheUtils;
+import win.scolia.cloud.sso.util.cache.PermissionRoleCacheUtils;
 import win.scolia.cloud.sso.util.cache.RoleCacheUtils;
 import win.scolia.cloud.sso.util.cache.RolePermissionCacheUtils;
+import win.scolia.cloud.sso.util.cache.UserPermissionCacheUtils;
 import win.scolia.cloud.sso.util.cache.UserRoleCacheUtils;
 
 import java.util.List;
@@ -41,6 +46,9 @@ public class RoleServiceImpl implements RoleService {
     @Autowired
     private RolePermissionMapper rolePermissionMapper;
 
+    @Autowired
+    private PermissionMapper permissionMapper;
+
     @Autowired
     private RoleCacheUtils roleCacheUtils;
 
@@ -50,6 +58,18 @@ public class RoleServiceImpl implements RoleService {
     @Autowired
     private RolePermissionCacheUtils rolePermissionCacheUtils;
 
+    @Autowired
+    private PermissionRoleCacheUtils permissionRoleCacheUtils;
+
+    @Autowired
+    private UserPermissionCacheUtils userPermissionCacheUtils;
+
+    @Autowired
+    private AuthorizationCacheUtils authorizationCacheUtils;
+
+    @Autowired
+    private AuthorizationModel authorizationModel;
+
     @Autowired
     private PageUtils pageUtils;
 
@@ -63,6 +83,7 @@ public class RoleServiceImpl implements RoleService {
         record.forCreate();
         try {
             roleMapper.insert(record);
+            roleCacheUtils.refresh(roleName, () -> this.selectRole(roleName)); // 覆盖空值标记
         } catch (DuplicateKeyException e) {
             throw new DuplicateRoleException(String.format("%s already exist", roleName), e);
         }
@@ -82,7 +103,9 @@ public class RoleServiceImpl implements RoleService {
         record.forCreate();
         try {
             userRoleMapper.insert(record);
-            userRoleCacheUtils.delete(userName);
+            userRoleCacheUtils.refresh(userName, () -> roleMapper.selectUserRolesByUserName(userName));
+            userPermissionCacheUtils.delete(userName); // 提交之后清除, 下次读取时重新计算
+            authorizationCacheUtils.delete(userName);
         } catch (DuplicateKeyException e) {
             throw new DuplicateRoleException(e);
         }
@@ -96,6 +119,7 @@ public class RoleServiceImpl implements RoleService {
         if (record == null) {
             throw new MissRoleException(String.format("%s not exist", roleName));
         }
+        Set<String> permissions = permissionMapper.selectPermissionsByRoleName(roleName);
         roleMapper.deleteByPrimaryKey(record);
         // 删除 用户-角色 的映射
         UserRole userRoleRecord = new UserRole();
@@ -107,8 +131,10 @@ public class RoleServiceImpl implements RoleService {
         rolePermissionMapper.delete(target);
         // 清除缓存
         roleCacheUtils.delete(roleName); // 清除 角色 缓存
-        userRoleCacheUtils.deleteAll(); // 清除所有的 用户-角色 缓存
+        userRoleCacheUtils.deleteByRole(roleName); // 清除拥有该角色的 用户-角色 缓存
         rolePermissionCacheUtils.delete(roleName); // 清除对应的 角色-权限 缓存
+        permissionRoleCacheUtils.multiDelete(permissions); // 清除记录了该角色的 权限-角色 索引
+        authorizationModel.invalidate();
     }
 
     @Override
@@ -124,7 +150,9 @@ public class RoleServiceImpl implements RoleService {
         // 删除 用户-角色 的映射
         UserRole record = new UserRole(user.getUserId(), role.getRoleId());
         userRoleMapper.delete(record);
-        userRoleCacheUtils.delete(userName); // 清除对应的 用户-角色 缓存
+        userRoleCacheUtils.refresh(userName, () -> roleMapper.selectUserRolesByUserName(userName)); // 刷新对应的 用户-角色 缓存
+        userPermissionCacheUtils.delete(userName); // 其他角色可能也有相同的权限, 只能重新计算
+        authorizationCacheUtils.delete(userName);
     }
 
     @Override
@@ -137,34 +165,32 @@ public class RoleServiceImpl implements RoleService {
         if (newRole != null) {
             throw new DuplicateRoleException(String.format("%s already exist", target));
         }
+        Set<String> permissions = permissionMapper.selectPermissionsByRoleName(current);
         Role record = new Role(role.getRoleId(), target);
         record.forUpdate();
         roleMapper.updateByPrimaryKeySelective(record);
         // 清除缓存
         roleCacheUtils.delete(current);
-        userRoleCacheUtils.deleteAll(); // 清除所有的 用户-角色 缓存
+        roleCacheUtils.refresh(target, () -> this.selectRole(target)); // 覆盖新角色名的空值标记
+        userRoleCacheUtils.deleteByRole(current); // 清除拥有该角色的 用户-角色 缓存
         rolePermissionCacheUtils.delete(current); // 清除对应的 角色-权限 缓存
+        rolePermissionCacheUtils.refresh(target, () -> permissionMapper.selectPermissionsByRoleName(target));
+        permissionRoleCacheUtils.multiDelete(permissions); // 清除记录了旧角色名的 权限-角色 索引
+        authorizationModel.invalidate();
     }
 
     @Override
     public Set<String> getUserRolesByUserName(String userName) {
-        Set<String> roles = userRoleCacheUtils.get(userName);
-        if (roles == null) {
-            roles = roleMapper.selectUserRolesByUserName(userName);
-            userRoleCacheUtils.cache(userName, roles);
-        }
-        return roles;
+        return userRoleCacheUtils.get(userName, () -> roleMapper.selectUserRolesByUserName(userName));
     }
 
     @Override
     public Role getRoleByRoleName(String roleName) {
-        Role role = roleCacheUtils.get(roleName);
-        if (role == null) {
-            Role query = new Role(roleName);
-            role = roleMapper.selectOne(query);
-            roleCacheUtils.cache(roleName, role);
-        }
-        return role;
+        return roleCacheUtils.get(roleName, () -> this.selectRole(roleName));
+    }
+
+    private Role selectRole(String roleName) {
+        return roleMapper.selectOne(new Role(roleName));
     }
 
     @Override
@@ -0,0 +1,177 @@
+package win.scolia.cloud.sso.service.Impl;
+
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.session.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.stereotype.Service;
+import win.scolia.cloud.sso.bean.vo.export.SessionExport;
+import win.scolia.cloud.sso.service.SessionService;
+import win.scolia.cloud.sso.service.TokenService;
+import win.scolia.cloud.sso.session.SSOSessionRepository;
+import win.scolia.cloud.sso.shiro.SSORememberMeManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 用户名 -> 会话 的索引由spring session维护: 登录时设置 PRINCIPAL_NAME_INDEX_NAME 属性, 会话删除或过期时移除
+ * 登录前就存在的会话和通过记住我恢复的会话由 SSOSessionRepository 在保存时补上索引
+ * 批量操作直接访问spring session的键, 键的格式需要与 @EnableRedisHttpSession 的命名空间一致
+ * 对外只暴露会话id的SHA-256摘要, 会话id本身就是登录凭证, 不能泄露给管理员
+ * 索引中的会话id可能是jdk或二进制格式, 统一通过会话的序列化器读取后再比较
+ */
+@Service
+public class SessionServiceImpl implements SessionService {
+
+    private static final String KEY_PREFIX = "spring:session:";
+
+    private static final byte[][] FIELDS = {
+            "creationTime".getBytes(StandardCharsets.UTF_8), "lastAccessedTime".getBytes(StandardCharsets.UTF_8),
+            "maxInactiveInterval".getBytes(StandardCharsets.UTF_8)
+    };
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    @Qualifier("springSessionDefaultRedisSerializer")
+    private RedisSerializer<Object> sessionSerializer;
+
+    @Autowired
+    private SSOSessionRepository sessionRepository;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private SSORememberMeManager rememberMeManager;
+
+    @Override
+    public void indexCurrentSession(String userName) {
+        SecurityUtils.getSubject().getSession().setAttribute(FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME,
+                userName.toUpperCase());
+    }
+
+    @Override
+    public List<SessionExport> listSessions(String userName) {
+        final byte[] indexKey = this.getIndexKey(userName);
+        final List<byte[]> members = this.getMembers(indexKey);
+        if (members.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[] member : members) {
+                connection.hMGet(this.getSessionKey(this.decodeId(member)), FIELDS);
+            }
+            return null;
+        }, sessionSerializer);
+        Session current = SecurityUtils.getSubject().getSession(false);
+        List<SessionExport> sessions = new ArrayList<>(members.size());
+        List<byte[]> stale = new ArrayList<>();
+        for (int i = 0; i < members.size(); i++) {
+            List<?> values = (List<?>) results.get(i);
+            if (values == null || values.get(0) == null) {
+                stale.add(members.get(i)); // 会话已过期, 索引还未清理
+                continue;
+            }
+            String id = this.decodeId(members.get(i));
+            SessionExport session = new SessionExport(this.getHandle(id), (Long) values.get(0), (Long) values.get(1),
+                    (Integer) values.get(2));
+            session.setCurrent(current != null && id.equals(current.getId()));
+            sessions.add(session);
+        }
+        if (!stale.isEmpty()) {
+            stringRedisTemplate.execute((RedisCallback<Long>) connection ->
+                    connection.sRem(indexKey, stale.toArray(new byte[stale.size()][])));
+        }
+        return sessions;
+    }
+
+    @Override
+    public int revokeSessions(String userName) {
+        tokenService.revokeUser(userName);
+        rememberMeManager.revoke(userName);
+        final byte[] indexKey = this.getIndexKey(userName);
+        final List<byte[]> members = this.getMembers(indexKey);
+        if (members.isEmpty()) {
+            return 0;
+        }
+        List<String> ids = new ArrayList<>(members.size());
+        for (byte[] member : members) {
+            ids.add(this.decodeId(member));
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String id : ids) {
+                connection.del(this.getSessionKey(id), this.getExpiredKey(id));
+            }
+            connection.del(indexKey);
+            return null;
+        });
+        sessionRepository.evict(ids);
+        return ids.size();
+    }
+
+    @Override
+    public boolean revokeSession(String userName, String handle) {
+        for (byte[] member : this.getMembers(this.getIndexKey(userName))) {
+            String id = this.decodeId(member);
+            if (this.getHandle(id).equals(handle)) {
+                sessionRepository.delete(id); // 由spring session清理索引和过期记录
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<byte[]> getMembers(byte[] indexKey) {
+        Set<byte[]> members = stringRedisTemplate.execute((RedisCallback<Set<byte[]>>) connection -> connection.sMembers(indexKey));
+        return members == null ? Collections.emptyList() : new ArrayList<>(members);
+    }
+
+    private String decodeId(byte[] member) {
+        return (String) sessionSerializer.deserialize(member);
+    }
+
+    /**
+     * 会话的不透明标识, 会话id随机生成, 摘要无法反推
+     */
+    private String getHandle(String id) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(id.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 与缓存的键一样, 用户名统一转为大写
+     */
+    private byte[] getIndexKey(String userName) {
+        return this.toBytes(KEY_PREFIX + "index:" + FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME + ":" + userName.toUpperCase());
+    }
+
+    private byte[] getSessionKey(String id) {
+        return this.toBytes(KEY_PREFIX + "sessions:" + id);
+    }
+
+    private byte[] getExpiredKey(String id) {
+        return this.toBytes(KEY_PREFIX + "sessions:expires:" + id);
+    }
+
+    private byte[] toBytes(String key) {
+        return stringRedisTemplate.getStringSerializer().serialize(key);
+    }
+}
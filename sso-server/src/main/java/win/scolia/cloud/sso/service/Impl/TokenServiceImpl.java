@@ -0,0 +1,140 @@
+package win.scolia.cloud.sso.service.Impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import win.scolia.cloud.sso.autoconfigure.SSOProperties;
+import win.scolia.cloud.sso.bean.entity.User;
+import win.scolia.cloud.sso.bean.vo.export.TokenExport;
+import win.scolia.cloud.sso.service.PermissionService;
+import win.scolia.cloud.sso.service.RoleService;
+import win.scolia.cloud.sso.service.TokenService;
+import win.scolia.cloud.sso.service.UserService;
+import win.scolia.cloud.sso.token.AccessToken;
+import win.scolia.cloud.sso.token.AccessTokenCodec;
+import win.scolia.cloud.sso.util.cache.TokenDenylistUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class TokenServiceImpl implements TokenService {
+
+    @Autowired
+    private SSOProperties properties;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private PermissionService permissionService;
+
+    @Autowired
+    private TokenDenylistUtils tokenDenylistUtils;
+
+    private AccessTokenCodec codec;
+
+    @PostConstruct
+    public void init() {
+        if (this.isEnable()) {
+            codec = new AccessTokenCodec(properties.getToken().getSecret());
+        }
+    }
+
+    @Override
+    public boolean isEnable() {
+        return properties.getToken().isEnable();
+    }
+
+    @Override
+    public TokenExport issue(User user) {
+        return this.issue(user, this.now());
+    }
+
+    /**
+     * @param authenticatedAt 最初登录的时间, 刷新时沿用旧令牌的值
+     */
+    private TokenExport issue(User user, long authenticatedAt) {
+        if (codec == null) {
+            return null;
+        }
+        String userName = user.getUserName();
+        Set<String> roles = roleService.getUserRolesByUserName(userName);
+        long now = this.now();
+        int expire = properties.getToken().getExpire();
+        AccessToken token = new AccessToken(UUID.randomUUID().toString(), user.getUserId(), userName,
+                roles == null ? Collections.emptySet() : new HashSet<>(roles), permissionService.getPermissionVersion(userName),
+                authenticatedAt, now, now + expire);
+        return new TokenExport(codec.encode(token), expire);
+    }
+
+    @Override
+    public AccessToken verify(String token) {
+        if (codec == null) {
+            return null;
+        }
+        AccessToken accessToken = codec.decode(token, this.now());
+        if (accessToken == null || tokenDenylistUtils.contains(accessToken.getTokenId())) {
+            return null;
+        }
+        // 同一秒内先登录后吊销的令牌仍然有效
+        if (accessToken.getAuthenticatedAt() < tokenDenylistUtils.getNotBefore(accessToken.getUserName())) {
+            return null;
+        }
+        return accessToken;
+    }
+
+    @Override
+    public TokenExport refresh(String token) {
+        AccessToken accessToken = this.verify(token);
+        if (accessToken == null) {
+            return null;
+        }
+        if (this.now() - accessToken.getAuthenticatedAt() >= properties.getToken().getRefreshMaxAge()) {
+            return null;
+        }
+        User user = userService.getUserByUserName(accessToken.getUserName());
+        if (user == null) {
+            return null;
+        }
+        // 并发刷新同一个令牌时只有一个成功
+        if (!tokenDenylistUtils.add(accessToken.getTokenId(), accessToken.getExpiresAt())) {
+            return null;
+        }
+        return this.issue(user, accessToken.getAuthenticatedAt());
+    }
+
+    @Override
+    public boolean revoke(String token) {
+        AccessToken accessToken = this.verify(token);
+        if (accessToken == null) {
+            return false;
+        }
+        tokenDenylistUtils.add(accessToken.getTokenId(), accessToken.getExpiresAt());
+        return true;
+    }
+
+    @Override
+    public void revokeUser(String userName) {
+        if (codec == null) {
+            return;
+        }
+        SSOProperties.Token token = properties.getToken();
+        tokenDenylistUtils.revokeUser(userName, token.getRefreshMaxAge() + token.getExpire());
+    }
+
+    @Override
+    public Set<String> listRevoked() {
+        return tokenDenylistUtils.list();
+    }
+
+    private long now() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+}
@@ -18,7 +18,11 @@ import win.scolia.cloud.sso.exception.MissUserException;
 import win.scolia.cloud.sso.service.UserService;
 import win.scolia.cloud.sso.util.EncryptUtils;
 import win.scolia.cloud.sso.util.PageUtils;
+import win.scolia.cloud.sso.util.cache.CacheValue;
+import win.scolia.cloud.sso.util.cache.AuthorizationCacheUtils;
 import win.scolia.cloud.sso.util.cache.UserCacheUtils;
+import win.scolia.cloud.sso.util.cache.UserPermissionCacheUtils;
+import win.scolia.cloud.sso.util.cache.UserRoleCacheUtils;
 
 import java.util.List;
 
@@ -34,6 +38,15 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserCacheUtils userCacheUtils;
 
+    @Autowired
+    private UserRoleCacheUtils userRoleCacheUtils;
+
+    @Autowired
+    private UserPermissionCacheUtils userPermissionCacheUtils;
+
+    @Autowired
+    private AuthorizationCacheUtils authorizationCacheUtils;
+
     @Autowired
     private EncryptUtils encryptUtils;
 
@@ -41,17 +54,21 @@ public class UserServiceImpl implements UserService {
     private PageUtils pageUtils;
 
     /**
-     * 获取用户对象, 并且获得到的用户对象不进行缓存
+     * 获取用户对象, 并且获得到的用户对象不进行缓存, 但会缓存不存在的用户
      *
      * @param userName 用户名
      * @return 用户对象或null
      */
     private User getUserSimply(String userName) {
         assert !StringUtils.isEmpty(userName) : "UserName can not be empty";
-        User user = userCacheUtils.get(userName);
+        CacheValue<User> cached = userCacheUtils.getValue(userName);
+        if (cached != null) {
+            return cached.get();
+        }
+        User query = new User(userName);
+        User user = userMapper.selectOne(query);
         if (user == null) {
-            User query = new User(userName);
-            user = userMapper.selectOne(query);
+            userCacheUtils.cache(userName, null);
         }
         return user;
     }
@@ -69,6 +86,7 @@ public class UserServiceImpl implements UserService {
         record.forCreate();
         try {
             userMapper.insert(record);
+            userCacheUtils.refresh(userName, () -> this.selectUser(userName)); // 覆盖空值标记
         } catch (DuplicateKeyException e) {
             throw new DuplicateUserException(String.format("%s already exist", vo.getUserName()), e);
         }
@@ -87,8 +105,11 @@ public class UserServiceImpl implements UserService {
         UserRole userRoleRecord = new UserRole();
         userRoleRecord.setUserId(record.getUserId());
         userRoleMapper.delete(userRoleRecord);
-        // 清除缓存
+        // 清除缓存, 同名用户重新创建后不能继承旧用户的角色和权限, 用户-角色缓存删除时会同时移出角色的索引
         userCacheUtils.delete(userName);
+        userRoleCacheUtils.delete(userName);
+        userPermissionCacheUtils.delete(userName);
+        authorizationCacheUtils.delete(userName);
     }
 
     @Override
@@ -103,7 +124,7 @@ public class UserServiceImpl implements UserService {
             User record = new User(user.getUserId(), password);
             record.forUpdate();
             userMapper.updateByPrimaryKeySelective(record);
-            userCacheUtils.delete(userName);
+            userCacheUtils.refresh(userName, () -> this.selectUser(userName));
             return true;
         }
         return false;
@@ -119,18 +140,16 @@ public class UserServiceImpl implements UserService {
         User record = new User(user.getUserId(), password);
         record.forUpdate();
         userMapper.updateByPrimaryKeySelective(record);
-        userCacheUtils.delete(userName);
+        userCacheUtils.refresh(userName, () -> this.selectUser(userName));
     }
 
     @Override
     public User getUserByUserName(String userName) {
-        User user = userCacheUtils.get(userName);
-        if (user == null) {
-            User query = new User(userName);
-            user = userMapper.selectOne(query);
-            userCacheUtils.cache(userName, user);
-        }
-        return user;
+        return userCacheUtils.get(userName, () -> this.selectUser(userName));
+    }
+
+    private User selectUser(String userName) {
+        return userMapper.selectOne(new User(userName));
     }
 
     @Override
@@ -3,6 +3,8 @@ package win.scolia.cloud.sso.service;
 import com.github.pagehelper.PageInfo;
 import win.scolia.cloud.sso.bean.entity.Permission;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 public interface PermissionService {
@@ -48,6 +50,27 @@ public interface PermissionService {
      */
     Set<String> getPermissionsByRoleName(String roleName);
 
+    /**
+     * 批量获取多个角色的权限, 缓存和数据库都只访问一次
+     * @param roleNames 角色名称
+     * @return 角色名和权限列表的映射
+     */
+    Map<String, Set<String>> getPermissionsByRoleNames(Collection<String> roleNames);
+
+    /**
+     * 获取用户的有效权限, 即其所有角色权限的并集
+     * @param userName 用户名
+     * @return 权限列表
+     */
+    Set<String> getPermissionsByUserName(String userName);
+
+    /**
+     * 获取用户有效权限的版本, 权限集合变化后版本不同
+     * @param userName 用户名
+     * @return 版本
+     */
+    long getPermissionVersion(String userName);
+
     /**
      * 获取权限对象
      * @param permission 具体的权限
@@ -0,0 +1,36 @@
+package win.scolia.cloud.sso.service;
+
+import win.scolia.cloud.sso.bean.vo.export.SessionExport;
+
+import java.util.List;
+
+public interface SessionService {
+
+    /**
+     * 登录后调用, 把当前会话加入 用户名 -> 会话 的索引
+     * @param userName 用户名
+     */
+    void indexCurrentSession(String userName);
+
+    /**
+     * 列出用户所有的会话, 不包含真实的会话id
+     * @param userName 用户名
+     * @return 会话列表
+     */
+    List<SessionExport> listSessions(String userName);
+
+    /**
+     * 结束用户所有的会话, 在一次管道操作中完成, 同时吊销该用户已签发的访问令牌和记住我cookie
+     * @param userName 用户名
+     * @return 结束的会话数
+     */
+    int revokeSessions(String userName);
+
+    /**
+     * 结束用户的某个会话
+     * @param userName 用户名
+     * @param handle 会话的不透明标识, 见 {@link SessionExport#getHandle()}
+     * @return 是否成功, 会话不属于该用户时返回false
+     */
+    boolean revokeSession(String userName, String handle);
+}
@@ -0,0 +1,57 @@
+package win.scolia.cloud.sso.service;
+
+import win.scolia.cloud.sso.bean.entity.User;
+import win.scolia.cloud.sso.bean.vo.export.TokenExport;
+import win.scolia.cloud.sso.token.AccessToken;
+
+import java.util.Set;
+
+public interface TokenService {
+
+    /**
+     * 是否启用了访问令牌
+     * @return 是否启用
+     */
+    boolean isEnable();
+
+    /**
+     * 为用户签发访问令牌
+     * @param user 用户
+     * @return 访问令牌
+     */
+    TokenExport issue(User user);
+
+    /**
+     * 验证访问令牌
+     * @param token 令牌字符串
+     * @return 令牌信息, 无效/过期/已吊销/在用户的吊销时间之前登录时返回null
+     */
+    AccessToken verify(String token);
+
+    /**
+     * 刷新访问令牌, 旧的令牌会被吊销, 新令牌使用用户当前的角色和权限, 保留最初的登录时间
+     * 同一个令牌只能刷新一次, 从登录开始超过最长刷新时间后不再允许刷新
+     * @param token 旧的令牌字符串
+     * @return 新的访问令牌, 旧令牌无效/已刷新/超过刷新期限或用户已不存在时返回null
+     */
+    TokenExport refresh(String token);
+
+    /**
+     * 吊销访问令牌
+     * @param token 令牌字符串
+     * @return 是否成功, 令牌无效时返回false
+     */
+    boolean revoke(String token);
+
+    /**
+     * 吊销用户已签发的所有令牌, 用于修改密码/删除用户/结束所有会话
+     * @param userName 用户名
+     */
+    void revokeUser(String userName);
+
+    /**
+     * 获取尚未过期的已吊销令牌id
+     * @return 令牌id
+     */
+    Set<String> listRevoked();
+}
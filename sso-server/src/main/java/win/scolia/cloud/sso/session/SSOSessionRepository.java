@@ -0,0 +1,347 @@
+package win.scolia.cloud.sso.session;
+
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.support.DefaultSubjectContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.session.ExpiringSession;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.MapSession;
+import org.springframework.session.data.redis.RedisOperationsSessionRepository;
+import win.scolia.cloud.sso.shiro.SSOPrincipal;
+import win.scolia.cloud.sso.util.cache.NearCache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 包装redis的session存储
+ * 1. 合并访问时间的写入: 距离上次写入的访问时间不超过 最大空闲时间 * touchRatio 时, 不再写回新的访问时间, 也不重新计算过期桶.
+ * 属性的修改仍然立即写入, 此时顺带写入被省去的访问时间. 代价是session实际的空闲超时会提前, 最多提前 最大空闲时间 * touchRatio
+ * 2. 可选的近端缓存: 缓存session的快照, 每个请求使用自己的副本, 需要写入时才从redis读取真实的session并重放修改.
+ * 写入属性和删除session时通过redis的发布订阅通知其他节点
+ * 3. 已登录但没有 用户名 -> 会话 索引的session(上线前创建的, 通过记住我恢复的)在保存时补上索引
+ */
+public class SSOSessionRepository implements FindByIndexNameSessionRepository<ExpiringSession>, MessageListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SSOSessionRepository.class);
+
+    // RedisSession 不是公开的类, 只能通过接口使用
+    private final FindByIndexNameSessionRepository<ExpiringSession> delegate;
+
+    private final double touchRatio;
+
+    private final SessionStats stats = new SessionStats();
+
+    private NearCache<MapSession> nearCache;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private String channel;
+
+    /**
+     * @param delegate redis的session存储
+     * @param touchRatio 省去写入的时间占最大空闲时间的比例, 0表示每次都写入
+     */
+    @SuppressWarnings("unchecked")
+    public SSOSessionRepository(RedisOperationsSessionRepository delegate, double touchRatio) {
+        this.delegate = (FindByIndexNameSessionRepository) delegate;
+        this.touchRatio = touchRatio;
+    }
+
+    /**
+     * 启用近端缓存
+     * @param nearCache 近端缓存
+     * @param stringRedisTemplate 用于发布失效通知
+     * @param channel 失效通知的频道
+     */
+    public void enableNearCache(NearCache<MapSession> nearCache, StringRedisTemplate stringRedisTemplate, String channel) {
+        this.nearCache = nearCache;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.channel = channel;
+    }
+
+    public SessionStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public ExpiringSession createSession() {
+        return new CoalescedSession(delegate.createSession(), false);
+    }
+
+    @Override
+    public void save(ExpiringSession session) {
+        this.index(session);
+        if (!(session instanceof CoalescedSession)) {
+            delegate.save(session);
+            stats.recordSave();
+            return;
+        }
+        CoalescedSession coalesced = (CoalescedSession) session;
+        if (coalesced.cached) {
+            if (!coalesced.dirty && coalesced.accessTime == 0) {
+                return; // 没有需要写入的内容
+            }
+            ExpiringSession target = delegate.getSession(coalesced.getId());
+            if (target == null) {
+                this.evict(coalesced.getId(), false); // 已被其他节点删除
+                return;
+            }
+            coalesced.replay(target);
+            coalesced.delegate = target;
+            coalesced.cached = false;
+        } else if (coalesced.dirty && coalesced.pendingAccessTime > 0) {
+            coalesced.delegate.setLastAccessedTime(coalesced.pendingAccessTime);
+            stats.recordPiggybackedTouch();
+        }
+        boolean dirty = coalesced.dirty;
+        coalesced.reset();
+        delegate.save(coalesced.delegate);
+        stats.recordSave();
+        if (nearCache != null) {
+            nearCache.put(coalesced.getId(), new MapSession(coalesced.delegate));
+            if (dirty) {
+                this.publish(coalesced.getId());
+            }
+        }
+    }
+
+    @Override
+    public ExpiringSession getSession(String id) {
+        if (nearCache != null) {
+            MapSession cached = nearCache.get(id);
+            if (cached != null && !cached.isExpired()) {
+                stats.recordNearHit();
+                return new CoalescedSession(new MapSession(cached), true);
+            }
+            stats.recordNearMiss();
+        }
+        ExpiringSession session = delegate.getSession(id);
+        if (session == null) {
+            return null;
+        }
+        if (nearCache != null) {
+            nearCache.put(id, new MapSession(session));
+        }
+        return new CoalescedSession(session, false);
+    }
+
+    @Override
+    public void delete(String id) {
+        delegate.delete(id);
+        this.evict(id, true);
+    }
+
+    /**
+     * 其他地方直接从redis删除session后调用, 清除本节点和其他节点的近端缓存
+     * @param ids session id
+     */
+    public void evict(Collection<String> ids) {
+        if (nearCache == null || ids.isEmpty()) {
+            return;
+        }
+        final RedisSerializer<String> serializer = stringRedisTemplate.getStringSerializer();
+        final byte[] rawChannel = serializer.serialize(channel);
+        for (String id : ids) {
+            nearCache.invalidate(id);
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String id : ids) {
+                connection.publish(rawChannel, serializer.serialize(id));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, ExpiringSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+        return new HashMap<>(delegate.findByIndexNameAndIndexValue(indexName, indexValue));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (nearCache == null) {
+            return;
+        }
+        String id = new String(message.getBody(), StandardCharsets.UTF_8);
+        nearCache.invalidate(id);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Invalidate session: {}", id);
+        }
+    }
+
+    /**
+     * 按shiro保存的身份设置索引属性, 已有索引时只读取一次属性
+     */
+    private void index(ExpiringSession session) {
+        if (session.getAttribute(PRINCIPAL_NAME_INDEX_NAME) != null) {
+            return;
+        }
+        Object principals = session.getAttribute(DefaultSubjectContext.PRINCIPALS_SESSION_KEY);
+        if (principals instanceof PrincipalCollection) {
+            SSOPrincipal principal = SSOPrincipal.from(((PrincipalCollection) principals).getPrimaryPrincipal());
+            if (principal != null) {
+                session.setAttribute(PRINCIPAL_NAME_INDEX_NAME, principal.getUserName().toUpperCase());
+            }
+        }
+    }
+
+    private void evict(String id, boolean publish) {
+        if (nearCache != null) {
+            nearCache.invalidate(id);
+            if (publish) {
+                this.publish(id);
+            }
+        }
+    }
+
+    private void publish(String id) {
+        stringRedisTemplate.convertAndSend(channel, id);
+    }
+
+    private class CoalescedSession implements ExpiringSession {
+
+        private ExpiringSession delegate;
+
+        // 是否为近端缓存的副本, 写入前需要从redis读取真实的session
+        private boolean cached;
+
+        // 被省去的访问时间
+        private long pendingAccessTime;
+
+        // 需要写入的访问时间, 只用于近端缓存的副本
+        private long accessTime;
+
+        // 是否修改过属性或最大空闲时间
+        private boolean dirty;
+
+        // 修改过的属性, 值为null表示删除, 只用于近端缓存的副本
+        private Map<String, Object> changes;
+
+        private CoalescedSession(ExpiringSession delegate, boolean cached) {
+            this.delegate = delegate;
+            this.cached = cached;
+        }
+
+        @Override
+        public void setLastAccessedTime(long lastAccessedTime) {
+            stats.recordTouch();
+            int maxInactive = delegate.getMaxInactiveIntervalInSeconds();
+            if (maxInactive > 0 && lastAccessedTime - delegate.getLastAccessedTime() < maxInactive * 1000L * touchRatio) {
+                pendingAccessTime = lastAccessedTime;
+                stats.recordSkippedTouch();
+                return;
+            }
+            pendingAccessTime = 0;
+            if (cached) {
+                accessTime = lastAccessedTime;
+            }
+            delegate.setLastAccessedTime(lastAccessedTime);
+        }
+
+        @Override
+        public long getLastAccessedTime() {
+            return pendingAccessTime > 0 ? pendingAccessTime : delegate.getLastAccessedTime();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            delegate.setAttribute(attributeName, attributeValue);
+            this.change(attributeName, attributeValue);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            delegate.removeAttribute(attributeName);
+            this.change(attributeName, null);
+        }
+
+        @Override
+        public void setMaxInactiveIntervalInSeconds(int interval) {
+            delegate.setMaxInactiveIntervalInSeconds(interval);
+            dirty = true;
+        }
+
+        private void change(String attributeName, Object attributeValue) {
+            dirty = true;
+            if (cached) {
+                if (changes == null) {
+                    changes = new LinkedHashMap<>();
+                }
+                changes.put(attributeName, attributeValue);
+            }
+        }
+
+        /**
+         * 把近端缓存副本上的修改重放到真实的session上
+         */
+        private void replay(ExpiringSession target) {
+            if (changes != null) {
+                for (Map.Entry<String, Object> entry : changes.entrySet()) {
+                    if (entry.getValue() == null) {
+                        target.removeAttribute(entry.getKey());
+                    } else {
+                        target.setAttribute(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            if (target.getMaxInactiveIntervalInSeconds() != delegate.getMaxInactiveIntervalInSeconds()) {
+                target.setMaxInactiveIntervalInSeconds(delegate.getMaxInactiveIntervalInSeconds());
+            }
+            long lastAccessedTime = accessTime > 0 ? accessTime : (dirty ? pendingAccessTime : 0);
+            if (lastAccessedTime > target.getLastAccessedTime()) {
+                target.setLastAccessedTime(lastAccessedTime);
+                if (accessTime == 0) {
+                    stats.recordPiggybackedTouch();
+                }
+            }
+        }
+
+        private void reset() {
+            dirty = false;
+            pendingAccessTime = 0;
+            accessTime = 0;
+            changes = null;
+        }
+
+        @Override
+        public long getCreationTime() {
+            return delegate.getCreationTime();
+        }
+
+        @Override
+        public int getMaxInactiveIntervalInSeconds() {
+            return delegate.getMaxInactiveIntervalInSeconds();
+        }
+
+        @Override
+        public boolean isExpired() {
+            return delegate.isExpired();
+        }
+
+        @Override
+        public String getId() {
+            return delegate.getId();
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            return delegate.getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return delegate.getAttributeNames();
+        }
+    }
+}
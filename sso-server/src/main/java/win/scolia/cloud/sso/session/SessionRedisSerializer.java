@@ -0,0 +1,212 @@
+package win.scolia.cloud.sso.session;
+
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import win.scolia.cloud.sso.shiro.SSOPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * spring session 的属性序列化器, 常见的类型(字符串/数字/布尔/shiro的身份集合)使用紧凑的二进制格式
+ * 其他类型和过长的字符串退回jdk序列化, 读取时只允许白名单中的类
+ * 二进制格式: 版本字节 + 类型字节 + 内容, 版本字节不会与jdk序列化的魔数(0xACED)冲突,
+ * 所以读取时同时兼容旧的jdk格式, 切换期间已有的session不会失效
+ */
+public class SessionRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte VERSION_1 = 0x01;
+
+    private static final byte TYPE_STRING = 0x01;
+
+    private static final byte TYPE_LONG = 0x02;
+
+    private static final byte TYPE_INTEGER = 0x03;
+
+    private static final byte TYPE_BOOLEAN = 0x04;
+
+    private static final byte TYPE_PRINCIPALS = 0x05;
+
+    private static final byte TYPE_OBJECT = 0x7F;
+
+    private static final byte PRINCIPAL_SSO = 0x01;
+
+    private static final byte PRINCIPAL_OBJECT = 0x7F;
+
+    private static final byte JDK_MAGIC_0 = (byte) 0xAC;
+
+    private static final byte JDK_MAGIC_1 = (byte) 0xED;
+
+    /**
+     * writeUTF 最多写入65535字节, 每个字符最多3字节, 不超过该长度的字符串一定可以写入
+     */
+    private static final int MAX_UTF_LENGTH = 65535 / 3;
+
+    private final boolean binary;
+
+    private final List<String> whitelist;
+
+    private final ClassLoader classLoader;
+
+    /**
+     * @param binary 写入时是否使用二进制格式, 否则写入jdk序列化格式
+     * @param whitelist 允许jdk反序列化的包名或类名前缀
+     * @param classLoader 类加载器
+     */
+    public SessionRedisSerializer(boolean binary, List<String> whitelist, ClassLoader classLoader) {
+        this.binary = binary;
+        this.whitelist = whitelist;
+        this.classLoader = classLoader;
+    }
+
+    @Override
+    public byte[] serialize(Object target) throws SerializationException {
+        if (target == null) {
+            return new byte[0];
+        }
+        try {
+            if (!binary) {
+                return this.serializeObject(target);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION_1);
+            if (target instanceof String && ((String) target).length() <= MAX_UTF_LENGTH) {
+                out.writeByte(TYPE_STRING);
+                out.writeUTF((String) target);
+            } else if (target instanceof Long) {
+                out.writeByte(TYPE_LONG);
+                out.writeLong((Long) target);
+            } else if (target instanceof Integer) {
+                out.writeByte(TYPE_INTEGER);
+                out.writeInt((Integer) target);
+            } else if (target instanceof Boolean) {
+                out.writeByte(TYPE_BOOLEAN);
+                out.writeBoolean((Boolean) target);
+            } else if (target.getClass() == SimplePrincipalCollection.class) {
+                out.writeByte(TYPE_PRINCIPALS);
+                this.writePrincipals((PrincipalCollection) target, out);
+            } else {
+                out.writeByte(TYPE_OBJECT);
+                this.writeObject(target, out);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Could not serialize session attribute: " + target.getClass(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            if (bytes.length > 1 && bytes[0] == JDK_MAGIC_0 && bytes[1] == JDK_MAGIC_1) {
+                return this.deserializeObject(bytes, 0, bytes.length);
+            }
+            if (bytes[0] != VERSION_1) {
+                throw new SerializationException("Unknown session attribute format: " + bytes[0]);
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+            byte type = in.readByte();
+            switch (type) {
+                case TYPE_STRING:
+                    return in.readUTF();
+                case TYPE_LONG:
+                    return in.readLong();
+                case TYPE_INTEGER:
+                    return in.readInt();
+                case TYPE_BOOLEAN:
+                    return in.readBoolean();
+                case TYPE_PRINCIPALS:
+                    return this.readPrincipals(in);
+                case TYPE_OBJECT:
+                    return this.readObject(in);
+                default:
+                    throw new SerializationException("Unknown session attribute type: " + type);
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new SerializationException("Could not deserialize session attribute", e);
+        }
+    }
+
+    private void writePrincipals(PrincipalCollection principals, DataOutputStream out) throws IOException {
+        Set<String> realmNames = principals.getRealmNames();
+        out.writeInt(realmNames.size());
+        for (String realmName : realmNames) {
+            Collection<?> values = principals.fromRealm(realmName);
+            out.writeUTF(realmName);
+            out.writeInt(values.size());
+            for (Object value : values) {
+                if (value instanceof SSOPrincipal) {
+                    SSOPrincipal principal = (SSOPrincipal) value;
+                    out.writeByte(PRINCIPAL_SSO);
+                    out.writeLong(principal.getUserId() == null ? -1L : principal.getUserId());
+                    out.writeUTF(principal.getUserName());
+                    out.writeLong(principal.getAuthzVersion());
+                } else {
+                    out.writeByte(PRINCIPAL_OBJECT);
+                    this.writeObject(value, out);
+                }
+            }
+        }
+    }
+
+    private PrincipalCollection readPrincipals(DataInputStream in) throws IOException, ClassNotFoundException {
+        SimplePrincipalCollection principals = new SimplePrincipalCollection();
+        int realms = in.readInt();
+        for (int i = 0; i < realms; i++) {
+            String realmName = in.readUTF();
+            int size = in.readInt();
+            for (int j = 0; j < size; j++) {
+                if (in.readByte() == PRINCIPAL_SSO) {
+                    long userId = in.readLong();
+                    String userName = in.readUTF();
+                    long authzVersion = in.readLong();
+                    principals.add(new SSOPrincipal(userId < 0 ? null : userId, userName, authzVersion), realmName);
+                } else {
+                    principals.add(this.readObject(in), realmName);
+                }
+            }
+        }
+        return principals;
+    }
+
+    private void writeObject(Object target, DataOutputStream out) throws IOException {
+        byte[] bytes = this.serializeObject(target);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private Object readObject(DataInputStream in) throws IOException, ClassNotFoundException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return this.deserializeObject(bytes, 0, bytes.length);
+    }
+
+    private byte[] serializeObject(Object target) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(target);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Object deserializeObject(byte[] bytes, int offset, int length) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new WhitelistObjectInputStream(new ByteArrayInputStream(bytes, offset, length),
+                whitelist, classLoader)) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package win.scolia.cloud.sso.session;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * session 存储的统计信息
+ */
+public class SessionStats {
+
+    private final LongAdder touches = new LongAdder();
+
+    private final LongAdder skippedTouches = new LongAdder();
+
+    private final LongAdder piggybackedTouches = new LongAdder();
+
+    private final LongAdder saves = new LongAdder();
+
+    private final LongAdder nearHits = new LongAdder();
+
+    private final LongAdder nearMisses = new LongAdder();
+
+    void recordTouch() {
+        touches.increment();
+    }
+
+    void recordSkippedTouch() {
+        skippedTouches.increment();
+    }
+
+    void recordPiggybackedTouch() {
+        piggybackedTouches.increment();
+    }
+
+    void recordSave() {
+        saves.increment();
+    }
+
+    void recordNearHit() {
+        nearHits.increment();
+    }
+
+    void recordNearMiss() {
+        nearMisses.increment();
+    }
+
+    /**
+     * @return 更新访问时间的次数
+     */
+    public long getTouches() {
+        return touches.sum();
+    }
+
+    /**
+     * @return 因为距上次写入不久而省去的访问时间写入次数
+     */
+    public long getSkippedTouches() {
+        return skippedTouches.sum();
+    }
+
+    /**
+     * @return 被省去后又随属性的修改一起写入的次数
+     */
+    public long getPiggybackedTouches() {
+        return piggybackedTouches.sum();
+    }
+
+    /**
+     * @return 调用底层存储保存的次数
+     */
+    public long getSaves() {
+        return saves.sum();
+    }
+
+    /**
+     * @return 近端缓存的命中次数
+     */
+    public long getNearHits() {
+        return nearHits.sum();
+    }
+
+    /**
+     * @return 近端缓存未命中, 从redis读取的次数
+     */
+    public long getNearMisses() {
+        return nearMisses.sum();
+    }
+}
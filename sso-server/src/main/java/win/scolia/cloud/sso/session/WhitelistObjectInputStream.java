@@ -0,0 +1,68 @@
+package win.scolia.cloud.sso.session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.List;
+
+/**
+ * 只允许反序列化白名单中的类, 白名单为包名或类名的前缀
+ * 动态代理检查其实现的所有接口
+ */
+class WhitelistObjectInputStream extends ObjectInputStream {
+
+    private final List<String> whitelist;
+
+    private final ClassLoader classLoader;
+
+    WhitelistObjectInputStream(InputStream in, List<String> whitelist, ClassLoader classLoader) throws IOException {
+        super(in);
+        this.whitelist = whitelist;
+        this.classLoader = classLoader;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+        String name = desc.getName();
+        if (!this.isAllowed(name)) {
+            throw new InvalidClassException(name, "Class is not in the session whitelist");
+        }
+        try {
+            return Class.forName(name, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            return super.resolveClass(desc);
+        }
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+        for (String name : interfaces) {
+            if (!this.isAllowed(name)) {
+                throw new InvalidClassException(name, "Proxy interface is not in the session whitelist");
+            }
+        }
+        return super.resolveProxyClass(interfaces);
+    }
+
+    private boolean isAllowed(String name) {
+        // 数组检查其元素类型, 基本类型的数组直接允许
+        int dimensions = 0;
+        while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        if (dimensions > 0) {
+            if (name.charAt(dimensions) != 'L') {
+                return true;
+            }
+            name = name.substring(dimensions + 1, name.length() - 1);
+        }
+        for (String prefix : whitelist) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
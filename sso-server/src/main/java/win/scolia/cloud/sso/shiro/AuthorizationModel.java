@@ -0,0 +1,243 @@
+package win.scolia.cloud.sso.shiro;
+
+import org.apache.shiro.authz.Permission;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import win.scolia.cloud.sso.autoconfigure.SSOProperties;
+import win.scolia.cloud.sso.bean.entity.RolePermissionName;
+import win.scolia.cloud.sso.dao.PermissionMapper;
+import win.scolia.cloud.sso.util.cache.CacheRefresher;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 位图鉴权模型: 所有权限按顺序编号, 每个角色的权限是一个位图, 用户的有效权限是其角色位图的并集
+ * 角色位图中已经包含了被通配符隐含的已知权限, 检查已知权限只需要一次位运算, 未知的权限返回-1, 由调用方退回其他方式
+ * 模型的版本保存在redis中, 角色或权限变更后递增, 各节点定期在后台检查并重建
+ * 注意: 已知权限按模型中的角色位图检查, 未知权限按缓存的鉴权信息检查, 两者的数据来源不同.
+ * 在模型重建之前(最多 model-refresh 秒)或鉴权缓存清除之前, 同一个用户对这两类权限的结果可能不一致,
+ * 两者都会在变更提交后很快收敛, 需要严格一致时关闭位图模型
+ */
+@Component
+public class AuthorizationModel {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuthorizationModel.class);
+
+    @Autowired
+    private SSOProperties properties;
+
+    @Autowired
+    private PermissionMapper permissionMapper;
+
+    @Autowired
+    private InterningPermissionResolver resolver;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CacheRefresher refresher;
+
+    private volatile Snapshot snapshot;
+
+    private volatile long checkedAt;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    public boolean isEnable() {
+        return properties.getAuthorization().isBitset();
+    }
+
+    /**
+     * 获取当前的模型, 只有第一次在调用线程上构建
+     * 之后到了检查时间时在后台线程上检查版本并重建, 重建期间继续使用旧的模型, 不阻塞鉴权
+     * @return 模型快照
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    long version = this.loadVersion();
+                    current = this.build(version);
+                    snapshot = current;
+                    checkedAt = System.nanoTime();
+                }
+            }
+            return current;
+        }
+        if (System.nanoTime() - checkedAt >= TimeUnit.SECONDS.toNanos(properties.getAuthorization().getModelRefresh())
+                && refreshing.compareAndSet(false, true)) {
+            if (!refresher.submit(this::refresh)) {
+                refreshing.set(false);
+            }
+        }
+        return current;
+    }
+
+    private void refresh() {
+        long seen = checkedAt;
+        try {
+            long version = this.loadVersion();
+            if (snapshot.version != version) {
+                snapshot = this.build(version);
+            }
+            if (checkedAt == seen) { // 期间本节点有变更时保留立即检查的标记
+                checkedAt = System.nanoTime();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Refresh authorization model error", e);
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * 角色或权限变更后调用, 事务中会推迟到提交之后执行
+     */
+    public void invalidate() {
+        if (!this.isEnable()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    AuthorizationModel.this.doInvalidate();
+                }
+            });
+            return;
+        }
+        this.doInvalidate();
+    }
+
+    private void doInvalidate() {
+        stringRedisTemplate.opsForValue().increment(this.getVersionKey(), 1);
+        checkedAt = 0; // 本节点下次使用时立即检查
+    }
+
+    private String getVersionKey() {
+        return String.format("%s:GENERATION:AUTHORIZATION_MODEL", properties.getCache().getPrefix().toUpperCase());
+    }
+
+    private long loadVersion() {
+        String value = stringRedisTemplate.opsForValue().get(this.getVersionKey());
+        return value == null ? 0L : Long.parseLong(value);
+    }
+
+    /**
+     * 全量构建模型, 已知权限之间的隐含关系在这里一次算好
+     */
+    private Snapshot build(long version) {
+        long start = System.nanoTime();
+        List<win.scolia.cloud.sso.bean.entity.Permission> records = permissionMapper.selectAll();
+        Map<Permission, Integer> indexes = new HashMap<>();
+        SSOWildcardPermission[] permissions = new SSOWildcardPermission[records.size()];
+        int size = 0;
+        for (win.scolia.cloud.sso.bean.entity.Permission record : records) {
+            SSOWildcardPermission permission = resolver.resolvePermission(record.getPermission());
+            if (indexes.putIfAbsent(permission, size) == null) {
+                permissions[size++] = permission;
+            }
+        }
+        // 每个权限隐含的已知权限
+        BitSet[] implied = new BitSet[size];
+        for (int i = 0; i < size; i++) {
+            implied[i] = new BitSet(size);
+            for (int j = 0; j < size; j++) {
+                if (permissions[i].implies(permissions[j])) {
+                    implied[i].set(j);
+                }
+            }
+        }
+        Map<String, BitSet> roles = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (RolePermissionName record : permissionMapper.selectAllRolePermissionNames()) {
+            Integer index = indexes.get(resolver.resolvePermission(record.getPermission()));
+            if (index != null) {
+                roles.computeIfAbsent(record.getRoleName(), r -> new BitSet(indexes.size())).or(implied[index]);
+            }
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Build authorization model, version: {}, permissions: {}, roles: {}, cost: {}ms",
+                    version, size, roles.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return new Snapshot(version, indexes, roles);
+    }
+
+    /**
+     * 模型的不可变快照
+     */
+    public static class Snapshot {
+
+        private static final BitSet EMPTY = new BitSet(0);
+
+        private final long version;
+
+        private final Map<Permission, Integer> indexes;
+
+        private final Map<String, BitSet> roles;
+
+        private Snapshot(long version, Map<Permission, Integer> indexes, Map<String, BitSet> roles) {
+            this.version = version;
+            this.indexes = indexes;
+            this.roles = roles;
+        }
+
+        /**
+         * @param permission 权限
+         * @return 权限的编号, 未知的权限返回-1
+         */
+        public int indexOf(Permission permission) {
+            Integer index = indexes.get(permission);
+            return index == null ? -1 : index;
+        }
+
+        /**
+         * 计算多个角色的有效权限
+         * @param roleNames 角色名
+         * @return 位图
+         */
+        public BitSet getPermissionBits(Collection<String> roleNames) {
+            BitSet bits = new BitSet(indexes.size());
+            if (roleNames != null) {
+                for (String roleName : roleNames) {
+                    bits.or(roles.getOrDefault(roleName, EMPTY));
+                }
+            }
+            return bits;
+        }
+
+        /**
+         * 是否拥有所有的权限, 不分配对象
+         * @param bits 用户的有效权限
+         * @param required 需要的权限编号
+         * @return 都拥有时返回true
+         */
+        public boolean hasAllPermissions(BitSet bits, int[] required) {
+            for (int index : required) {
+                if (index < 0 || !bits.get(index)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package win.scolia.cloud.sso.shiro;
+
+import org.apache.shiro.authz.permission.PermissionResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 解析后的权限按字符串缓存并在所有用户之间共享, 避免每次鉴权都重新切分字符串
+ * 权限的数量有限, 超出上限后不再缓存, 直接解析
+ * 只有权限表和代码中的权限走缓存, 外部传入的任意字符串使用 {@link #resolveWithoutInterning(String)}
+ */
+@Component
+public class InterningPermissionResolver implements PermissionResolver {
+
+    private static final int MAX_SIZE = 10000;
+
+    private final ConcurrentHashMap<String, SSOWildcardPermission> permissions = new ConcurrentHashMap<>();
+
+    @Override
+    public SSOWildcardPermission resolvePermission(String permissionString) {
+        SSOWildcardPermission permission = permissions.get(permissionString);
+        if (permission != null) {
+            return permission;
+        }
+        permission = new SSOWildcardPermission(permissionString);
+        if (permissions.size() < MAX_SIZE) {
+            SSOWildcardPermission exist = permissions.putIfAbsent(permissionString, permission);
+            if (exist != null) {
+                return exist;
+            }
+        }
+        return permission;
+    }
+
+    /**
+     * 解析外部传入的权限, 已缓存时直接复用, 否则只解析不缓存
+     * @param permissionString 权限字符串
+     * @return 解析后的权限
+     * @throws IllegalArgumentException 权限为空或格式错误
+     */
+    public SSOWildcardPermission resolveWithoutInterning(String permissionString) {
+        if (permissionString == null) {
+            throw new IllegalArgumentException("Permission string cannot be null");
+        }
+        SSOWildcardPermission permission = permissions.get(permissionString);
+        return permission != null ? permission : new SSOWildcardPermission(permissionString);
+    }
+}
@@ -0,0 +1,152 @@
+package win.scolia.cloud.sso.shiro;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.permission.PermissionResolver;
+import org.apache.shiro.authz.permission.WildcardPermission;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 把一个用户的所有权限按段编译成前缀树, implies() 的开销只与权限的段数有关, 与权限的数量无关
+ * 被检查的权限某一段包含多个子项(例如 user:read,write)时, 退回为逐个检查
+ */
+public class PermissionTrie implements Permission {
+
+    private static final String WILDCARD_TOKEN = "*";
+
+    private final Node root = new Node();
+
+    private final List<Permission> permissions = new ArrayList<>();
+
+    /**
+     * 编译权限
+     * @param permissionStrings 权限字符串
+     * @param resolver 权限解析器, 使用 InterningPermissionResolver 时解析结果可以在用户之间共享
+     * @return 前缀树
+     */
+    public static PermissionTrie compile(Collection<String> permissionStrings, PermissionResolver resolver) {
+        PermissionTrie trie = new PermissionTrie();
+        if (permissionStrings != null) {
+            for (String permissionString : permissionStrings) {
+                trie.add(resolver.resolvePermission(permissionString));
+            }
+        }
+        return trie;
+    }
+
+    private void add(Permission permission) {
+        permissions.add(permission);
+        if (permission instanceof SSOWildcardPermission) {
+            this.insert(root, ((SSOWildcardPermission) permission).getPartList(), 0);
+        }
+    }
+
+    /**
+     * 多个子项的段展开为多个分支, 对于每段只有一个子项的检查, 结果与逐个检查相同
+     */
+    private void insert(Node node, List<Set<String>> parts, int index) {
+        if (this.isWildcardTail(parts, index)) {
+            node.complete = true;
+        }
+        if (index == parts.size()) {
+            node.terminal = true;
+            return;
+        }
+        Set<String> part = parts.get(index);
+        if (part.contains(WILDCARD_TOKEN)) {
+            if (node.wildcard == null) {
+                node.wildcard = new Node();
+            }
+            this.insert(node.wildcard, parts, index + 1);
+            return;
+        }
+        for (String token : part) {
+            this.insert(node.children.computeIfAbsent(token, t -> new Node()), parts, index + 1);
+        }
+    }
+
+    /**
+     * 剩下的段是否都是通配符, 是时该权限也包含在此处结束的权限
+     */
+    private boolean isWildcardTail(List<Set<String>> parts, int index) {
+        for (int i = index; i < parts.size(); i++) {
+            if (!parts.get(i).contains(WILDCARD_TOKEN)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean implies(Permission permission) {
+        if (permission instanceof SSOWildcardPermission) {
+            List<Set<String>> parts = ((SSOWildcardPermission) permission).getPartList();
+            if (this.isSingleToken(parts)) {
+                return this.search(root, parts, 0);
+            }
+        }
+        for (Permission p : permissions) {
+            if (p.implies(permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSingleToken(List<Set<String>> parts) {
+        for (Set<String> part : parts) {
+            if (part.size() != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean search(Node node, List<Set<String>> parts, int index) {
+        if (node.terminal) {
+            return true; // 拥有的权限段数更少, 包含后面的所有段
+        }
+        if (index == parts.size()) {
+            return node.complete;
+        }
+        String token = parts.get(index).iterator().next();
+        if (WILDCARD_TOKEN.equals(token)) {
+            // 检查的是通配符时, 只有拥有的权限在这一段也是通配符才包含
+            return node.wildcard != null && this.search(node.wildcard, parts, index + 1);
+        }
+        Node child = node.children.get(token);
+        if (child != null && this.search(child, parts, index + 1)) {
+            return true;
+        }
+        return node.wildcard != null && this.search(node.wildcard, parts, index + 1);
+    }
+
+    /**
+     * @return 编译前的权限数量
+     */
+    public int size() {
+        return permissions.size();
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+
+        private Node wildcard;
+
+        /**
+         * 有权限在此处结束
+         */
+        private boolean terminal;
+
+        /**
+         * 有权限在此处之后只剩下通配符
+         */
+        private boolean complete;
+    }
+}
@@ -0,0 +1,58 @@
+package win.scolia.cloud.sso.shiro;
+
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.authz.permission.PermissionResolver;
+
+import java.util.BitSet;
+
+/**
+ * 附带编译后的权限前缀树和位图, 两者都不参与序列化, 需要时重新计算
+ */
+public class SSOAuthorizationInfo extends SimpleAuthorizationInfo {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient volatile PermissionTrie permissionTrie;
+
+    private transient volatile Bits permissionBits;
+
+    /**
+     * 获取编译后的权限
+     * @param resolver 权限解析器
+     * @return 前缀树
+     */
+    public PermissionTrie getPermissionTrie(PermissionResolver resolver) {
+        PermissionTrie trie = permissionTrie;
+        if (trie == null) {
+            trie = PermissionTrie.compile(this.getStringPermissions(), resolver);
+            permissionTrie = trie;
+        }
+        return trie;
+    }
+
+    /**
+     * 获取角色在该模型下的有效权限位图, 模型版本变化后重新计算
+     * @param snapshot 位图模型
+     * @return 位图
+     */
+    public BitSet getPermissionBits(AuthorizationModel.Snapshot snapshot) {
+        Bits bits = permissionBits;
+        if (bits == null || bits.snapshot != snapshot) {
+            bits = new Bits(snapshot, snapshot.getPermissionBits(this.getRoles()));
+            permissionBits = bits;
+        }
+        return bits.bits;
+    }
+
+    private static class Bits {
+
+        private final AuthorizationModel.Snapshot snapshot;
+
+        private final BitSet bits;
+
+        private Bits(AuthorizationModel.Snapshot snapshot, BitSet bits) {
+            this.snapshot = snapshot;
+            this.bits = bits;
+        }
+    }
+}
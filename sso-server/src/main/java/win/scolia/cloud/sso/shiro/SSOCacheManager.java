@@ -0,0 +1,88 @@
+package win.scolia.cloud.sso.shiro;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.cache.CacheManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import win.scolia.cloud.sso.util.cache.BaseCacheUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 基于现有缓存工具的 shiro 缓存管理器, 缓存名即缓存工具的前缀, 例如: AUTHORIZATION
+ * 数据在redis中, 开启近端缓存后大部分读取在本地完成, 失效通过发布订阅同步到所有节点
+ */
+@Component
+public class SSOCacheManager implements CacheManager {
+
+    @Autowired
+    private List<BaseCacheUtils<?>> caches;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Cache<K, V> getCache(String name) throws CacheException {
+        for (BaseCacheUtils<?> cache : caches) {
+            if (cache.getStats().getName().equalsIgnoreCase(name)) {
+                return new ShiroCache<>((BaseCacheUtils<V>) cache);
+            }
+        }
+        throw new CacheException(String.format("Can not find the cache: %s", name));
+    }
+
+    /**
+     * 键使用 toString() 转为字符串, 分布式缓存不支持遍历, keys/values 返回空集合
+     */
+    private static class ShiroCache<K, V> implements Cache<K, V> {
+
+        private final BaseCacheUtils<V> cacheUtils;
+
+        private ShiroCache(BaseCacheUtils<V> cacheUtils) {
+            this.cacheUtils = cacheUtils;
+        }
+
+        @Override
+        public V get(K key) throws CacheException {
+            return key == null ? null : cacheUtils.get(key.toString());
+        }
+
+        @Override
+        public V put(K key, V value) throws CacheException {
+            if (key != null && value != null) {
+                cacheUtils.cache(key.toString(), value);
+            }
+            return null;
+        }
+
+        @Override
+        public V remove(K key) throws CacheException {
+            if (key != null) {
+                cacheUtils.delete(key.toString());
+            }
+            return null;
+        }
+
+        @Override
+        public void clear() throws CacheException {
+            cacheUtils.deleteAll();
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public Set<K> keys() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Collection<V> values() {
+            return Collections.emptyList();
+        }
+    }
+}
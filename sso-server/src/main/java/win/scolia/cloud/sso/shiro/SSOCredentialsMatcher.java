@@ -3,11 +3,12 @@ package win.scolia.cloud.sso.shiro;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.SaltedAuthenticationInfo;
 import org.apache.shiro.authc.UsernamePasswordToken;
 import org.apache.shiro.authc.credential.CredentialsMatcher;
+import org.apache.shiro.codec.CodecSupport;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import win.scolia.cloud.sso.bean.entity.User;
 import win.scolia.cloud.sso.util.EncryptUtils;
 
 /**
@@ -22,14 +23,14 @@ public class SSOCredentialsMatcher implements CredentialsMatcher {
 
     @Override
     public boolean doCredentialsMatch(AuthenticationToken authenticationToken, AuthenticationInfo info) {
-        // 真实的用户
-        User user = (User) info.getPrincipals().getPrimaryPrincipal();
+        // 真实的密码和盐
         String password = (String) info.getCredentials();
+        String salt = CodecSupport.toString(((SaltedAuthenticationInfo) info).getCredentialsSalt().getBytes());
         // 用户提交的信息
         UsernamePasswordToken token = (UsernamePasswordToken) authenticationToken;
         String rawPassword = new String(token.getPassword());
         // 加密
-        String tempPassword = encryptUtils.getEncryptedPassword(rawPassword, user.getSalt());
+        String tempPassword = encryptUtils.getEncryptedPassword(rawPassword, salt);
         return StringUtils.equals(password, tempPassword);
     }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package win.scolia.cloud.sso.shiro;
+
+import win.scolia.cloud.sso.bean.entity.User;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * 保存在会话中的用户身份, 只包含用户id, 用户名和登录时的权限版本, 不包含密码和盐
+ * 完整的用户对象通过 ShiroUtils.getCurrentUser 从缓存中按需获取
+ */
+public class SSOPrincipal implements Externalizable {
+
+    private static final long serialVersionUID = 2853194617720385311L;
+
+    private static final byte VERSION = 1;
+
+    private Long userId;
+
+    private String userName;
+
+    private long authzVersion;
+
+    // 同一个请求中已经获取过的用户对象
+    private transient User user;
+
+    /**
+     * 反序列化使用
+     */
+    public SSOPrincipal() {
+    }
+
+    public SSOPrincipal(Long userId, String userName, long authzVersion) {
+        this.userId = userId;
+        this.userName = userName;
+        this.authzVersion = authzVersion;
+    }
+
+    /**
+     * 转换会话或记住我中保存的身份, 兼容旧版本直接保存的 User 对象
+     * @param principal 身份
+     * @return 用户身份, 无法识别的类型返回null
+     */
+    public static SSOPrincipal from(Object principal) {
+        if (principal instanceof SSOPrincipal) {
+            return (SSOPrincipal) principal;
+        }
+        if (principal instanceof User) {
+            User user = (User) principal;
+            return new SSOPrincipal(user.getUserId(), user.getUserName(), 0L); // 旧身份没有权限版本
+        }
+        return null;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public long getAuthzVersion() {
+        return authzVersion;
+    }
+
+    User getUser() {
+        return user;
+    }
+
+    void setUser(User user) {
+        this.user = user;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeLong(userId == null ? -1L : userId);
+        out.writeUTF(userName);
+        out.writeLong(authzVersion);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unknown principal version: %s", version));
+        }
+        long id = in.readLong();
+        userId = id < 0 ? null : id;
+        userName = in.readUTF();
+        authzVersion = in.readLong();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SSOPrincipal that = (SSOPrincipal) o;
+        return userName != null ? userName.equals(that.userName) : that.userName == null;
+    }
+
+    @Override
+    public int hashCode() {
+        return userName != null ? userName.hashCode() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return userName;
+    }
+}
@@ -2,17 +2,21 @@ package win.scolia.cloud.sso.shiro;
 
 import org.apache.shiro.authc.*;
 import org.apache.shiro.authz.AuthorizationInfo;
-import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.UnauthenticatedException;
 import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.util.ByteSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import win.scolia.cloud.sso.bean.entity.User;
 import win.scolia.cloud.sso.service.PermissionService;
 import win.scolia.cloud.sso.service.RoleService;
 import win.scolia.cloud.sso.service.UserService;
+import win.scolia.cloud.sso.util.cache.UserRoleCacheUtils;
 
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.Set;
 
 @Component
@@ -27,6 +31,12 @@ public class SSORealm extends AuthorizingRealm {
     @Autowired
     private PermissionService permissionService;
 
+    @Autowired
+    private AuthorizationModel authorizationModel;
+
+    @Autowired
+    private UserRoleCacheUtils userRoleCacheUtils;
+
     /**
      * 进行用户登录
      */
@@ -38,7 +48,34 @@ public class SSORealm extends AuthorizingRealm {
         if (user == null) {
             throw new UnknownAccountException(String.format("Can not find the user: %s", userName));
         }
-        return new SimpleAuthenticationInfo(user, user.getPassword(), getName());
+        return new SimpleAuthenticationInfo(this.createPrincipals(user), user.getPassword(),
+                ByteSource.Util.bytes(user.getSalt()));
+    }
+
+    /**
+     * 创建会话中保存的用户身份, 只包含必要的信息
+     * @param user 用户
+     * @return 身份集合
+     */
+    public PrincipalCollection createPrincipals(User user) {
+        SSOPrincipal principal = new SSOPrincipal(user.getUserId(), user.getUserName(),
+                permissionService.getPermissionVersion(user.getUserName()));
+        principal.setUser(user);
+        return new SimplePrincipalCollection(principal, getName());
+    }
+
+    /**
+     * 获取身份对应的完整用户对象, 从缓存中获取, 同一个请求中只获取一次
+     * @param principal 用户身份
+     * @return 用户对象, 用户已被删除时返回null
+     */
+    public User getUser(SSOPrincipal principal) {
+        User user = principal.getUser();
+        if (user == null) {
+            user = userService.getUserByUserName(principal.getUserName());
+            principal.setUser(user);
+        }
+        return user;
     }
 
     /**
@@ -46,16 +83,73 @@ public class SSORealm extends AuthorizingRealm {
      */
     @Override
     protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
-        User user  = (User) principals.getPrimaryPrincipal();
+        SSOPrincipal user = this.getPrincipal(principals);
         Set<String> roles = roleService.getUserRolesByUserName(user.getUserName());
-        Set<String> permissions = new HashSet<>();
-        for (String role : roles) {
-            Set<String> perms = permissionService.getPermissionsByRoleName(role);
-            permissions.addAll(perms);
+        Set<String> permissions = permissionService.getPermissionsByUserName(user.getUserName());
+        userRoleCacheUtils.index(user.getUserName(), roles); // 鉴权信息会被缓存, 需要先加入 角色 -> 用户 的索引
+        SSOAuthorizationInfo authorizationInfo = new SSOAuthorizationInfo();
+        authorizationInfo.addRoles(roles);
+        authorizationInfo.addStringPermissions(permissions);
+        return authorizationInfo;
+    }
+
+    /**
+     * 鉴权信息按用户名缓存, 便于在角色和权限变更时清除
+     */
+    @Override
+    protected Object getAuthorizationCacheKey(PrincipalCollection principals) {
+        return this.getPrincipal(principals).getUserName();
+    }
+
+    /**
+     * 兼容旧版本保存在会话和记住我中的 User 身份, 无法识别时视为未登录
+     */
+    private SSOPrincipal getPrincipal(PrincipalCollection principals) {
+        SSOPrincipal principal = SSOPrincipal.from(principals.getPrimaryPrincipal());
+        if (principal == null) {
+            throw new UnauthenticatedException("Unknown principal type");
+        }
+        return principal;
+    }
+
+    /**
+     * 开启位图模型时, 已知的权限直接检查位图, 其他情况使用编译后的权限前缀树检查, 不再逐个比较
+     * 两种方式的数据来源不同, 变更后短时间内结果可能不一致, 见 {@link AuthorizationModel}
+     */
+    @Override
+    protected boolean isPermitted(Permission permission, AuthorizationInfo info) {
+        if (info instanceof SSOAuthorizationInfo) {
+            SSOAuthorizationInfo authorizationInfo = (SSOAuthorizationInfo) info;
+            if (authorizationModel.isEnable()) {
+                AuthorizationModel.Snapshot snapshot = authorizationModel.getSnapshot();
+                int index = snapshot.indexOf(permission);
+                if (index >= 0) {
+                    return authorizationInfo.getPermissionBits(snapshot).get(index);
+                }
+            }
+            return authorizationInfo.getPermissionTrie(this.getPermissionResolver()).implies(permission);
+        }
+        return super.isPermitted(permission, info);
+    }
+
+    /**
+     * 开启位图模型且所有权限都已知时, 一次检查全部的位, 否则逐个检查
+     */
+    @Override
+    protected boolean isPermittedAll(Collection<Permission> permissions, AuthorizationInfo info) {
+        if (info instanceof SSOAuthorizationInfo && authorizationModel.isEnable() && permissions != null
+                && !permissions.isEmpty()) {
+            AuthorizationModel.Snapshot snapshot = authorizationModel.getSnapshot();
+            int[] required = new int[permissions.size()];
+            int i = 0;
+            for (Permission permission : permissions) {
+                required[i] = snapshot.indexOf(permission);
+                if (required[i++] < 0) {
+                    return super.isPermittedAll(permissions, info); // 有未知的权限
+                }
+            }
+            return snapshot.hasAllPermissions(((SSOAuthorizationInfo) info).getPermissionBits(snapshot), required);
         }
-        SimpleAuthorizationInfo simpleAuthorizationInfo = new SimpleAuthorizationInfo();
-        simpleAuthorizationInfo.addRoles(roles);
-        simpleAuthorizationInfo.addStringPermissions(permissions);
-        return simpleAuthorizationInfo;
+        return super.isPermittedAll(permissions, info);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package win.scolia.cloud.sso.shiro;
+
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.SubjectContext;
+import org.apache.shiro.web.mgt.CookieRememberMeManager;
+import org.apache.shiro.web.servlet.Cookie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import win.scolia.cloud.sso.util.cache.RememberMeRevocationUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记住我的cookie中附带签发时间, 恢复身份时与用户的吊销时间比较, 吊销之前签发的cookie直接清除
+ * 旧版本的cookie没有签发时间, 用户被吊销过一次后即失效
+ */
+@Component
+public class SSORememberMeManager extends CookieRememberMeManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SSORememberMeManager.class);
+
+    @Autowired
+    private RememberMeRevocationUtils rememberMeRevocationUtils;
+
+    /**
+     * 吊销用户所有的记住我cookie
+     * @param userName 用户名
+     */
+    public void revoke(String userName) {
+        int maxAge = this.getCookie().getMaxAge();
+        rememberMeRevocationUtils.revoke(userName, maxAge > 0 ? maxAge : Cookie.ONE_YEAR);
+    }
+
+    @Override
+    protected byte[] serialize(PrincipalCollection principals) {
+        return super.serialize(new RememberedPrincipals(principals, this.now()));
+    }
+
+    @Override
+    public PrincipalCollection getRememberedPrincipals(SubjectContext subjectContext) {
+        PrincipalCollection principals = super.getRememberedPrincipals(subjectContext);
+        if (principals == null || principals.isEmpty()) {
+            return principals;
+        }
+        SSOPrincipal principal = SSOPrincipal.from(principals.getPrimaryPrincipal());
+        long rememberedAt = principals instanceof RememberedPrincipals ? ((RememberedPrincipals) principals).rememberedAt : 0;
+        if (principal == null || rememberedAt < rememberMeRevocationUtils.getRevokedAt(principal.getUserName())) {
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("Forget revoked remember me: {}", principal == null ? null : principal.getUserName());
+            }
+            this.forgetIdentity(subjectContext);
+            return null;
+        }
+        return new SimplePrincipalCollection(principals); // 会话中只保存普通的身份集合
+    }
+
+    private long now() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+
+    /**
+     * 附带签发时间的身份集合, 只用于记住我的cookie
+     */
+    static class RememberedPrincipals extends SimplePrincipalCollection {
+
+        private static final long serialVersionUID = -6432815907021752943L;
+
+        private final long rememberedAt;
+
+        RememberedPrincipals(PrincipalCollection principals, long rememberedAt) {
+            super(principals);
+            this.rememberedAt = rememberedAt;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package win.scolia.cloud.sso.shiro;
+
+import org.apache.shiro.authz.permission.WildcardPermission;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 公开了分段结果的通配符权限, 便于编译成前缀树, 创建后不再修改, 可以在用户之间共享
+ */
+public class SSOWildcardPermission extends WildcardPermission {
+
+    public SSOWildcardPermission(String wildcardString) {
+        super(wildcardString);
+    }
+
+    /**
+     * @return 每一段的子项, 不区分大小写时已转为小写
+     */
+    public List<Set<String>> getPartList() {
+        return this.getParts();
+    }
+}
@@ -1,10 +1,19 @@
 package win.scolia.cloud.sso.util;
 
 import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.authz.UnauthenticatedException;
+import org.apache.shiro.mgt.RealmSecurityManager;
+import org.apache.shiro.realm.Realm;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
 import org.apache.shiro.subject.Subject;
+import org.apache.shiro.subject.support.DefaultSubjectContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import win.scolia.cloud.sso.bean.entity.User;
+import win.scolia.cloud.sso.shiro.SSOPrincipal;
+import win.scolia.cloud.sso.shiro.SSORealm;
 
 /**
  * shiro 的相关工具类
@@ -14,13 +23,55 @@ public class ShiroUtils {
     private static Logger LOGGER = LoggerFactory.getLogger(ShiroUtils.class);
 
     /**
-     * 获取当前登录的用户对象
+     * 获取当前登录的用户身份, 只包含用户id和用户名
+     * 旧版本的会话和记住我中保存的是 User 对象, 转换后写回会话, 无法识别的身份直接登出
+     *
+     * @return 用户身份, 未登录时返回null
+     * @throws UnauthenticatedException 身份无法识别
+     */
+    public static SSOPrincipal getCurrentPrincipal() {
+        Subject subject = SecurityUtils.getSubject();
+        Object current = subject.getPrincipal();
+        if (current == null || current instanceof SSOPrincipal) {
+            return (SSOPrincipal) current;
+        }
+        SSOPrincipal principal = SSOPrincipal.from(current);
+        if (principal == null) {
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn("Unknown principal type: {}, logout", current.getClass().getName());
+            }
+            subject.logout();
+            throw new UnauthenticatedException("Unknown principal type");
+        }
+        Session session = subject.getSession(false);
+        if (session != null) {
+            PrincipalCollection principals = subject.getPrincipals();
+            String realmName = principals.getRealmNames().iterator().next();
+            session.setAttribute(DefaultSubjectContext.PRINCIPALS_SESSION_KEY, new SimplePrincipalCollection(principal, realmName));
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Migrate legacy principal: {}", principal.getUserName());
+        }
+        return principal;
+    }
+
+    /**
+     * 获取当前登录的用户对象, 按需从缓存中获取
      *
      * @return 用户对象
      */
     public static User getCurrentUser() {
-        Subject subject = SecurityUtils.getSubject();
-        return (User) subject.getPrincipal();
+        SSOPrincipal principal = getCurrentPrincipal();
+        if (principal == null) {
+            return null;
+        }
+        RealmSecurityManager securityManager = (RealmSecurityManager) SecurityUtils.getSecurityManager();
+        for (Realm realm : securityManager.getRealms()) {
+            if (realm instanceof SSORealm) {
+                return ((SSORealm) realm).getUser(principal);
+            }
+        }
+        return null;
     }
 
     /**
@@ -30,7 +81,7 @@ public class ShiroUtils {
      */
     public static String getCurrentUserName() {
         try {
-            return getCurrentUser().getUserName();
+            return getCurrentPrincipal().getUserName();
         } catch (Exception e) {
             LOGGER.error("Get current user's name error", e);
             return "Unknown";
@@ -0,0 +1,58 @@
+package win.scolia.cloud.sso.util.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import win.scolia.cloud.sso.autoconfigure.SSOProperties;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 记录最近登录的用户, 用于启动时预热缓存, 只保留最近的若干个
+ */
+@Component
+public class ActiveUserUtils {
+
+    private static final String ACTIVE_USER_PREFIX = "ACTIVE_USER";
+
+    @Autowired
+    private SSOProperties properties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private String getKey() {
+        return String.format("%s:%s", properties.getCache().getPrefix().toUpperCase(), ACTIVE_USER_PREFIX);
+    }
+
+    /**
+     * 记录用户的登录
+     * @param userName 用户名
+     */
+    public void record(String userName) {
+        final RedisSerializer<String> serializer = stringRedisTemplate.getStringSerializer();
+        final byte[] key = serializer.serialize(this.getKey());
+        final byte[] member = serializer.serialize(userName);
+        final long max = properties.getWarmUp().getActiveUsers();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.zAdd(key, System.currentTimeMillis(), member);
+            connection.zRemRange(key, 0, -max - 1);
+            return null;
+        });
+    }
+
+    /**
+     * 获取最近登录的用户
+     * @param limit 数量
+     * @return 用户名, 按最近登录时间倒序
+     */
+    public Set<String> listRecent(int limit) {
+        if (limit <= 0) {
+            return Collections.emptySet();
+        }
+        return stringRedisTemplate.opsForZSet().reverseRange(this.getKey(), 0, limit - 1);
+    }
+}
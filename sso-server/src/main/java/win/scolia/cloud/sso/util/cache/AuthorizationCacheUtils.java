@@ -0,0 +1,55 @@
+package win.scolia.cloud.sso.util.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import win.scolia.cloud.sso.shiro.SSOAuthorizationInfo;
+
+/**
+ * shiro 的鉴权信息缓存, 键为用户名, 与用户的有效权限一样依赖 角色 -> 用户 的反向索引
+ * 过期时间固定, 读取时不刷新, 保证反向索引总是比缓存活得更久
+ * shiro 先计算再写入, 写入与失效之间没有版本校验, 因此使用较短的过期时间限制旧数据的存活时间
+ */
+@Component
+public class AuthorizationCacheUtils extends BaseCacheUtils<SSOAuthorizationInfo> {
+
+    private static final String AUTHORIZATION_PREFIX = "AUTHORIZATION";
+
+    /**
+     * 未在策略中配置过期时间时的默认值(秒)
+     */
+    private static final long DEFAULT_EXPIRE = 600;
+
+    private static Logger LOGGER = LoggerFactory.getLogger(AuthorizationCacheUtils.class);
+
+    @Autowired
+    private RedisTemplate<String, SSOAuthorizationInfo> redisTemplate;
+
+    @Override
+    protected String getSelfPrefix() {
+        return AUTHORIZATION_PREFIX;
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return LOGGER;
+    }
+
+    @Override
+    protected RedisTemplate<String, SSOAuthorizationInfo> getRedisTemplate() {
+        return redisTemplate;
+    }
+
+    @Override
+    protected long getExpire() {
+        long expire = this.getPolicy().getExpire();
+        return expire > 0 ? expire : DEFAULT_EXPIRE;
+    }
+
+    @Override
+    protected boolean isFlush() {
+        return false;
+    }
+}
@@ -3,35 +3,196 @@ package win.scolia.cloud.sso.util.cache;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.BoundValueOperations;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import win.scolia.cloud.sso.autoconfigure.SSOProperties;
 
-import java.util.Set;
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public abstract class BaseCacheUtils<T> implements CacheUtils<T> {
 
     @Autowired
     private SSOProperties properties;
 
+    @Autowired
+    private CacheInvalidator invalidator;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CacheRefresher refresher;
+
+    /**
+     * 当前的代数, 所有的键都带有代数, 删除全部缓存时只需要递增代数, 旧的键会随着过期时间自然淘汰
+     */
+    private volatile long generation;
+
+    /**
+     * 代数最后一次从redis读取的时间, 用于定期校准
+     */
+    private volatile long generationLoadedAt;
+
+    private volatile boolean generationLoaded = false;
+
+    /**
+     * 启动时解析的缓存策略, 避免每次读取都遍历配置
+     */
+    private volatile SSOProperties.Cache.Policy policy;
+
+    /**
+     * 近端缓存, 未开启时为null
+     */
+    private NearCache<CacheValue<T>> nearCache;
+
+    /**
+     * 命中率, 耗时等统计信息
+     */
+    private CacheStats stats;
+
+    /**
+     * 正在加载中的键, 用于合并同一个键的并发加载
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<T>> loadings = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        stats = new CacheStats(this.getSelfPrefix().toUpperCase());
+        policy = properties.getCache().getPolicy(this.getSelfPrefix());
+        if (policy.isNearCache()) {
+            nearCache = new NearCache<>(policy.getNearMaxSize(), policy.getNearExpire());
+        }
+        invalidator.register(this);
+    }
 
     protected String getCacheKey(String prefix, String key) {
-        return String.format("%s:%s:%s", this.getPrefix().toUpperCase(), prefix.toUpperCase(), key.toUpperCase());
+        return String.format("%s:%s:%d:%s", this.getPrefix().toUpperCase(), prefix.toUpperCase(),
+                this.getGeneration(), key.toUpperCase());
+    }
+
+    /**
+     * 代数计数器的键, 不能落在 PREFIX:SELF:* 的范围内, 否则会被清理
+     */
+    protected String getGenerationKey() {
+        return String.format("%s:GENERATION:%s", this.getPrefix().toUpperCase(), this.getSelfPrefix().toUpperCase());
+    }
+
+    /**
+     * 获取当前的代数, 本地缓存一段时间, 其他节点删除全部缓存时会通过通知使其失效
+     */
+    protected long getGeneration() {
+        if (generationLoaded && System.nanoTime() - generationLoadedAt
+                < TimeUnit.SECONDS.toNanos(properties.getCache().getGenerationRefresh())) {
+            return generation;
+        }
+        return this.loadGeneration();
+    }
+
+    private long loadGeneration() {
+        String value = stringRedisTemplate.opsForValue().get(this.getGenerationKey());
+        this.updateGeneration(value == null ? 0L : Long.parseLong(value));
+        return generation;
+    }
+
+    private void updateGeneration(long generation) {
+        this.generation = generation;
+        this.generationLoadedAt = System.nanoTime();
+        this.generationLoaded = true;
     }
 
     protected String getPrefix() {
         return properties.getCache().getPrefix();
     }
 
+    /**
+     * 过期时间, 缓存策略中配置了时优先使用策略的值
+     */
     protected long getExpire() {
-        return properties.getCache().getExpire();
+        long expire = this.getPolicy().getExpire();
+        return expire > 0 ? expire : properties.getCache().getExpire();
+    }
+
+    /**
+     * 写入时使用的过期时间, 带有随机抖动, 避免同一批写入的键同时过期
+     */
+    protected long getJitteredExpire() {
+        long expire = this.getExpire();
+        long jitter = (long) (expire * properties.getCache().getExpireJitter());
+        return jitter <= 0 ? expire : expire + ThreadLocalRandom.current().nextLong(jitter + 1);
+    }
+
+    /**
+     * 写入时可能使用的最大过期时间, 即带上最大的抖动
+     */
+    protected long getMaxExpire() {
+        long expire = this.getExpire();
+        return expire + (long) (expire * properties.getCache().getExpireJitter());
+    }
+
+    /**
+     * 扫描和批量删除时每批的数量, 与清理旧代数使用相同的配置
+     */
+    protected int getBatchSize() {
+        return Math.max(1, properties.getCache().getSweepBatchSize());
+    }
+
+    protected double getRefreshBeta() {
+        return properties.getCache().getRefreshBeta();
     }
 
     protected boolean isFlush() {
         return properties.getCache().isFlushExpire();
     }
 
+    protected long getFlushThreshold() {
+        return properties.getCache().getFlushThreshold();
+    }
+
+    protected long getMissingExpire() {
+        return properties.getCache().getMissingExpire();
+    }
+
+    protected SSOProperties.Cache.Policy getPolicy() {
+        SSOProperties.Cache.Policy resolved = policy;
+        if (resolved == null) {
+            resolved = properties.getCache().getPolicy(this.getSelfPrefix());
+            policy = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * 近端缓存使用的键, 与redis中的键保持相同的大小写规则
+     */
+    private String getNearKey(String key) {
+        return key.toUpperCase();
+    }
+
     protected abstract String getSelfPrefix();
 
     protected abstract Logger getLogger();
@@ -40,55 +201,716 @@ public abstract class BaseCacheUtils<T> implements CacheUtils<T> {
 
     @Override
     public void cache(String key, T target) {
-        if (target == null || StringUtils.isEmpty(key)) {
+        if (StringUtils.isEmpty(key)) {
             return;
         }
         String cacheKey = this.getCacheKey(this.getSelfPrefix(), key);
-        getRedisTemplate().opsForValue().set(cacheKey, target, this.getExpire(), TimeUnit.SECONDS);
+        if (target == null) {
+            this.getRawRedisTemplate().opsForValue().set(cacheKey, NullValue.INSTANCE, this.getMissingExpire(), TimeUnit.SECONDS);
+        } else {
+            getRedisTemplate().opsForValue().set(cacheKey, target, this.getJitteredExpire(), TimeUnit.SECONDS);
+        }
+        if (nearCache != null) {
+            nearCache.put(this.getNearKey(key), CacheValue.of(target));
+        }
         if (this.getLogger().isDebugEnabled()) {
-            this.getLogger().debug("Cache: {}", cacheKey);
+            this.getLogger().debug(target == null ? "Cache missing: {}" : "Cache: {}", cacheKey);
         }
     }
 
     @Override
     public T get(String key) {
+        CacheValue<T> value = this.getValue(key);
+        return value == null ? null : value.get();
+    }
+
+    @Override
+    public CacheValue<T> getValue(String key) {
+        return this.readValue(key, false);
+    }
+
+    /**
+     * 读取缓存
+     * @param key 键
+     * @param withTtl 是否需要同时读取剩余时间, 近端缓存命中时剩余时间未知
+     * @return 缓存的值/null
+     */
+    private CacheValue<T> readValue(String key, boolean withTtl) {
         if (StringUtils.isEmpty(key)) {
             return null;
         }
+        if (nearCache != null) {
+            CacheValue<T> value = nearCache.get(this.getNearKey(key));
+            if (value != null) {
+                if (value.isMissing()) {
+                    stats.recordMissingHit();
+                } else {
+                    stats.recordNearHit();
+                }
+                if (this.getLogger().isDebugEnabled()) {
+                    this.getLogger().debug("Near hit: {}:{}", this.getSelfPrefix(), key);
+                }
+                return value;
+            }
+        }
         String cacheKey = this.getCacheKey(this.getSelfPrefix(), key);
-        BoundValueOperations<String, T> operations = getRedisTemplate().boundValueOps(cacheKey);
-        if (this.isFlush()) {
-            operations.expire(this.getExpire(), TimeUnit.SECONDS);
+        long start = System.nanoTime();
+        long ttl = -1;
+        Object target;
+        if (this.isFlush() || withTtl) {
+            List<?> result = this.isFlush() ? this.getAndTouch(cacheKey) : this.getWithTtl(cacheKey);
+            target = result.get(0);
+            ttl = (Long) result.get(1);
+        } else {
+            target = this.getRawRedisTemplate().opsForValue().get(cacheKey);
         }
-        T target = operations.get();
+        stats.recordRedis(System.nanoTime() - start);
+        CacheValue<T> value = this.toCacheValue(target);
+        this.recordValue(value);
         if (this.getLogger().isDebugEnabled()) {
-            if (target != null) {
+            if (value == null) {
+                this.getLogger().debug("Miss: {}", cacheKey);
+            } else if (value.isMissing()) {
+                this.getLogger().debug("Hit missing: {}", cacheKey);
+            } else {
                 this.getLogger().debug("Hit: {}", cacheKey);
+            }
+        }
+        if (value != null && nearCache != null) {
+            nearCache.put(this.getNearKey(key), value);
+        }
+        return value == null || value.isMissing() ? value : CacheValue.of(value.get(), ttl);
+    }
+
+    @Override
+    public T get(String key, Supplier<T> loader) {
+        CacheValue<T> value = this.readValue(key, this.getRefreshBeta() > 0);
+        if (value != null) {
+            if (this.shouldRefreshEarly(value)) {
+                this.refreshAsync(key, value.get(), loader);
+            }
+            return value.get();
+        }
+        String nearKey = this.getNearKey(key);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> loading = loadings.putIfAbsent(nearKey, future);
+        if (loading != null) {
+            if (this.getLogger().isDebugEnabled()) {
+                this.getLogger().debug("Wait loading: {}:{}", this.getSelfPrefix(), key);
+            }
+            return this.join(loading);
+        }
+        return this.load(key, loader, future);
+    }
+
+    /**
+     * 加载并写入缓存, 完成后唤醒等待同一个键的线程
+     */
+    private T load(String key, Supplier<T> loader, CompletableFuture<T> future) {
+        long start = System.nanoTime();
+        try {
+            T target = loader.get();
+            stats.recordLoad(System.nanoTime() - start);
+            this.cache(key, target);
+            future.complete(target);
+            return target;
+        } catch (RuntimeException | Error e) {
+            stats.recordLoadFailure();
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadings.remove(this.getNearKey(key), future);
+        }
+    }
+
+    /**
+     * XFetch: 剩余时间越短、加载越慢, 越有可能提前刷新, 条件为 delta * beta * -ln(rand) >= ttl
+     * delta 取该缓存加载耗时的平均值, 还没有加载过时不提前刷新
+     */
+    private boolean shouldRefreshEarly(CacheValue<T> value) {
+        if (value.isMissing() || value.getTtl() <= 0) {
+            return false;
+        }
+        long delta = stats.getLoadLatency().getMeanNanos();
+        if (delta <= 0) {
+            return false;
+        }
+        double rand = 1 - ThreadLocalRandom.current().nextDouble();
+        return delta * this.getRefreshBeta() * -Math.log(rand) >= TimeUnit.MILLISECONDS.toNanos(value.getTtl());
+    }
+
+    /**
+     * 在后台刷新, 同一个键同时只有一个刷新任务, 刷新期间读取方继续使用旧值
+     */
+    private void refreshAsync(String key, T current, Supplier<T> loader) {
+        String nearKey = this.getNearKey(key);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (loadings.putIfAbsent(nearKey, future) != null) {
+            return;
+        }
+        boolean submitted = refresher.submit(() -> {
+            try {
+                this.load(key, loader, future);
+            } catch (RuntimeException e) {
+                this.getLogger().warn("Refresh {}:{} error", this.getSelfPrefix(), key, e);
+            }
+        });
+        if (submitted) {
+            stats.recordEarlyRefresh();
+            if (this.getLogger().isDebugEnabled()) {
+                this.getLogger().debug("Refresh early: {}:{}", this.getSelfPrefix(), key);
+            }
+        } else {
+            loadings.remove(nearKey, future);
+            future.complete(current);
+        }
+    }
+
+    private T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Map<String, T> multiGet(Collection<String> keys) {
+        Map<String, T> result = new HashMap<>();
+        List<String> redisKeys = new ArrayList<>();
+        for (String key : keys) {
+            if (StringUtils.isEmpty(key)) {
+                continue;
+            }
+            CacheValue<T> value = nearCache == null ? null : nearCache.get(this.getNearKey(key));
+            if (value != null) {
+                if (!value.isMissing()) {
+                    stats.recordNearHit();
+                }
+                this.putValue(result, key, value);
             } else {
-                this.getLogger().debug("Miss: {}", cacheKey);
+                redisKeys.add(key);
+            }
+        }
+        if (redisKeys.isEmpty()) {
+            return result;
+        }
+        List<String> cacheKeys = new ArrayList<>(redisKeys.size());
+        for (String key : redisKeys) {
+            cacheKeys.add(this.getCacheKey(this.getSelfPrefix(), key));
+        }
+        long start = System.nanoTime();
+        List<?> targets = this.isFlush() ? this.multiGetAndTouch(cacheKeys)
+                : this.getRawRedisTemplate().opsForValue().multiGet(cacheKeys);
+        stats.recordRedis(System.nanoTime() - start);
+        for (int i = 0; i < redisKeys.size(); i++) {
+            CacheValue<T> value = this.toCacheValue(targets.get(i));
+            if (value == null) {
+                stats.recordMiss();
+                continue;
+            }
+            if (!value.isMissing()) {
+                stats.recordHit();
+            }
+            this.putValue(result, redisKeys.get(i), value);
+            if (nearCache != null) {
+                nearCache.put(this.getNearKey(redisKeys.get(i)), value);
+            }
+        }
+        if (this.getLogger().isDebugEnabled()) {
+            this.getLogger().debug("Multi get {}:{}, hit {}", this.getSelfPrefix(), keys, result.keySet());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, T> multiGet(Collection<String> keys, Function<Collection<String>, Map<String, T>> loader) {
+        Map<String, T> result = this.multiGet(keys);
+        List<String> misses = new ArrayList<>();
+        for (String key : keys) {
+            if (!StringUtils.isEmpty(key) && !result.containsKey(key)) {
+                misses.add(key);
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+        long start = System.nanoTime();
+        Map<String, T> loaded;
+        try {
+            loaded = loader.apply(misses);
+        } catch (RuntimeException | Error e) {
+            stats.recordLoadFailure();
+            throw e;
+        }
+        stats.recordLoad(System.nanoTime() - start);
+        Map<String, T> targets = new LinkedHashMap<>();
+        for (String key : misses) {
+            T target = loaded.get(key);
+            targets.put(key, target);
+            result.put(key, target);
+        }
+        this.multiCache(targets);
+        return result;
+    }
+
+    @Override
+    public void multiCache(Map<String, T> targets) {
+        this.doMultiCache(targets, false);
+    }
+
+    @Override
+    public void multiCacheIfAbsent(Map<String, T> targets) {
+        this.doMultiCache(targets, true);
+    }
+
+    /**
+     * 使用管道批量写入
+     * @param ifAbsent 为true时使用SET NX EX, 键已存在时不覆盖, 由于无法得知是否写入成功, 不写入近端缓存
+     */
+    private void doMultiCache(Map<String, T> targets, boolean ifAbsent) {
+        if (targets.isEmpty()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        final RedisSerializer<String> keySerializer = (RedisSerializer<String>) getRedisTemplate().getKeySerializer();
+        @SuppressWarnings("unchecked")
+        final RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) getRedisTemplate().getValueSerializer();
+        final Map<byte[], byte[]> values = new LinkedHashMap<>();
+        final Map<byte[], Long> expires = new HashMap<>();
+        for (Map.Entry<String, T> entry : targets.entrySet()) {
+            if (StringUtils.isEmpty(entry.getKey())) {
+                continue;
+            }
+            T target = entry.getValue();
+            byte[] rawKey = keySerializer.serialize(this.getCacheKey(this.getSelfPrefix(), entry.getKey()));
+            values.put(rawKey, valueSerializer.serialize(target == null ? NullValue.INSTANCE : target));
+            expires.put(rawKey, target == null ? this.getMissingExpire() : this.getJitteredExpire());
+            if (nearCache != null && !ifAbsent) {
+                nearCache.put(this.getNearKey(entry.getKey()), CacheValue.of(target));
+            }
+        }
+        getRedisTemplate().executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<byte[], byte[]> entry : values.entrySet()) {
+                long expire = expires.get(entry.getKey());
+                if (ifAbsent) {
+                    connection.set(entry.getKey(), entry.getValue(), Expiration.seconds(expire),
+                            RedisStringCommands.SetOption.SET_IF_ABSENT);
+                } else {
+                    connection.setEx(entry.getKey(), expire, entry.getValue());
+                }
             }
+            return null;
+        });
+        if (this.getLogger().isDebugEnabled()) {
+            this.getLogger().debug("Multi cache {}:{} ifAbsent: {}", this.getSelfPrefix(), targets.keySet(), ifAbsent);
+        }
+    }
+
+    /**
+     * 在服务端一步完成读取和刷新过期时间, 空值标记使用自己的过期时间, 不参与刷新
+     * @return [值, 剩余时间(毫秒)]
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<?> getAndTouch(String cacheKey) {
+        RedisSerializer valueSerializer = getRedisTemplate().getValueSerializer();
+        RedisScript<Object> script = (RedisScript) CacheScripts.GET_AND_TOUCH;
+        return (List<?>) this.getRawRedisTemplate().execute(script, (RedisSerializer<?>) null, valueSerializer,
+                Collections.singletonList(cacheKey),
+                String.valueOf(this.getJitteredExpire()).getBytes(StandardCharsets.UTF_8),
+                String.valueOf(this.getFlushThreshold()).getBytes(StandardCharsets.UTF_8),
+                valueSerializer.serialize(NullValue.INSTANCE));
+    }
+
+    /**
+     * 读取值和剩余时间
+     * @return [值, 剩余时间(毫秒)]
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<?> getWithTtl(String cacheKey) {
+        RedisSerializer valueSerializer = getRedisTemplate().getValueSerializer();
+        RedisScript<Object> script = (RedisScript) CacheScripts.GET_WITH_TTL;
+        return (List<?>) this.getRawRedisTemplate().execute(script, (RedisSerializer<?>) null, valueSerializer,
+                Collections.singletonList(cacheKey));
+    }
+
+    /**
+     * 批量读取并刷新过期时间, 同样遵守刷新阈值, 一次往返完成
+     * @return 值的列表, 与键的顺序一致
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<?> multiGetAndTouch(List<String> cacheKeys) {
+        RedisSerializer valueSerializer = getRedisTemplate().getValueSerializer();
+        RedisScript<Object> script = (RedisScript) CacheScripts.MULTI_GET_AND_TOUCH;
+        return (List<?>) this.getRawRedisTemplate().execute(script, (RedisSerializer<?>) null, valueSerializer, cacheKeys,
+                String.valueOf(this.getJitteredExpire()).getBytes(StandardCharsets.UTF_8),
+                String.valueOf(this.getFlushThreshold()).getBytes(StandardCharsets.UTF_8),
+                valueSerializer.serialize(NullValue.INSTANCE));
+    }
+
+    private void putValue(Map<String, T> result, String key, CacheValue<T> value) {
+        if (value.isMissing()) {
+            stats.recordMissingHit();
+        }
+        result.put(key, value.get());
+    }
+
+    private void recordValue(CacheValue<T> value) {
+        if (value == null) {
+            stats.recordMiss();
+        } else if (value.isMissing()) {
+            stats.recordMissingHit();
+        } else {
+            stats.recordHit();
+        }
+    }
+
+    /**
+     * 命中空值标记的次数
+     */
+    public long getMissingHits() {
+        return stats.getMissingHits();
+    }
+
+    /**
+     * 获取该缓存的统计信息
+     * @return 统计信息
+     */
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheValue<T> toCacheValue(Object target) {
+        if (target == null) {
+            return null;
+        }
+        if (target instanceof NullValue) {
+            return CacheValue.missing();
+        }
+        return CacheValue.of((T) target);
+    }
+
+    /**
+     * 空值标记不是T类型, 需要绕过泛型约束读写
+     */
+    @SuppressWarnings("unchecked")
+    private RedisTemplate<String, Object> getRawRedisTemplate() {
+        return (RedisTemplate) getRedisTemplate();
+    }
+
+    @Override
+    public void refresh(String key, Supplier<T> loader) {
+        if (StringUtils.isEmpty(key)) {
+            return;
+        }
+        if (CacheInvalidationBuffer.isActive()) {
+            this.getBuffer().refresh(this, key, loader);
+            return;
+        }
+        this.doRefresh(key, loader);
+    }
+
+    void doRefresh(String key, Supplier<T> loader) {
+        if (!this.getPolicy().isWriteThrough()) {
+            this.doDelete(key);
+            return;
+        }
+        long start = System.nanoTime();
+        T target;
+        try {
+            target = loader.get();
+        } catch (RuntimeException | Error e) {
+            stats.recordLoadFailure();
+            this.doDelete(key); // 加载失败时退回为删除, 避免留下旧值
+            throw e;
+        }
+        stats.recordLoad(System.nanoTime() - start);
+        this.cache(key, target);
+        if (nearCache != null) {
+            invalidator.publish(this.getSelfPrefix(), key);
         }
-        return target;
     }
 
+    @Override
+    public void multiRefresh(Collection<String> keys, Function<Collection<String>, Map<String, T>> loader) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<String> targets = new ArrayList<>(keys);
+        this.runAfterCommit(() -> this.doMultiRefresh(targets, loader));
+    }
+
+    private void doMultiRefresh(List<String> keys, Function<Collection<String>, Map<String, T>> loader) {
+        if (!this.getPolicy().isWriteThrough()) {
+            this.deleteNow(keys);
+            return;
+        }
+        long start = System.nanoTime();
+        Map<String, T> loaded;
+        try {
+            loaded = loader.apply(keys);
+        } catch (RuntimeException | Error e) {
+            stats.recordLoadFailure();
+            this.deleteNow(keys); // 加载失败时退回为删除, 避免留下旧值
+            throw e;
+        }
+        stats.recordLoad(System.nanoTime() - start);
+        Map<String, T> targets = new LinkedHashMap<>();
+        for (String key : keys) {
+            targets.put(key, loaded.get(key));
+        }
+        this.multiCache(targets);
+        this.publishInvalidation(keys);
+    }
+
+    /**
+     * 写入新值后, 通知其他节点清除近端缓存中的旧值
+     * @param keys 键
+     */
+    protected void publishInvalidation(Collection<String> keys) {
+        if (nearCache == null) {
+            return;
+        }
+        for (String key : keys) {
+            invalidator.publish(this.getSelfPrefix(), key);
+        }
+    }
+
+    /**
+     * 事务中的删除会推迟到提交之后批量执行
+     */
     @Override
     public void delete(String key) {
         if (StringUtils.isEmpty(key)) {
             return;
         }
+        if (CacheInvalidationBuffer.isActive()) {
+            this.getBuffer().delete(this, key);
+            return;
+        }
+        this.doDelete(key);
+    }
+
+    private void doDelete(String key) {
+        this.beforeDelete(Collections.singletonList(key));
         String cacheKey = this.getCacheKey(this.getSelfPrefix(), key);
+        long start = System.nanoTime();
         getRedisTemplate().delete(cacheKey);
+        stats.recordRedis(System.nanoTime() - start);
+        if (nearCache != null) {
+            invalidator.publish(this.getSelfPrefix(), key);
+        }
+        this.afterDelete(key);
+    }
+
+    /**
+     * redis中的键删除之前调用, 用于清理依赖这些键的索引
+     * @param keys 键
+     */
+    void beforeDelete(Collection<String> keys) {
+    }
+
+    /**
+     * redis中的键删除之后, 清理本地状态
+     */
+    void afterDelete(String key) {
+        stats.recordEviction();
+        if (nearCache != null) {
+            nearCache.invalidate(this.getNearKey(key));
+        }
         if (this.getLogger().isDebugEnabled()) {
-            this.getLogger().debug("Delete: {}", cacheKey);
+            this.getLogger().debug("Delete: {}:{}", this.getSelfPrefix(), key);
+        }
+    }
+
+    @Override
+    public void multiDelete(Collection<String> keys) {
+        if (CacheInvalidationBuffer.isActive()) {
+            for (String key : keys) {
+                this.delete(key);
+            }
+            return;
+        }
+        List<String> targets = new ArrayList<>();
+        for (String key : keys) {
+            if (!StringUtils.isEmpty(key)) {
+                targets.add(key);
+            }
+        }
+        this.deleteNow(targets);
+    }
+
+    /**
+     * 批量删除, 按批使用管道完成, 单次的DEL不会包含过多的键, 不经过事务缓冲区
+     * @param keys 键
+     */
+    protected void deleteNow(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        int batchSize = this.getBatchSize();
+        List<String> batch = new ArrayList<>(Math.min(batchSize, keys.size()));
+        for (String key : keys) {
+            batch.add(key);
+            if (batch.size() >= batchSize) {
+                this.deleteBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            this.deleteBatch(batch);
+        }
+    }
+
+    private void deleteBatch(List<String> keys) {
+        this.beforeDelete(keys);
+        final List<byte[]> rawKeys = new ArrayList<>(keys.size());
+        final List<byte[]> messages = new ArrayList<>();
+        for (String key : keys) {
+            rawKeys.add(this.getCacheKey(this.getSelfPrefix(), key).getBytes(StandardCharsets.UTF_8));
+            if (nearCache != null) {
+                messages.add(invalidator.getMessage(this.getSelfPrefix(), key).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        final byte[] channel = invalidator.getChannel().getBytes(StandardCharsets.UTF_8);
+        long start = System.nanoTime();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.del(rawKeys.toArray(new byte[rawKeys.size()][]));
+            for (byte[] message : messages) {
+                connection.publish(channel, message);
+            }
+            return null;
+        });
+        stats.recordRedis(System.nanoTime() - start);
+        for (String key : keys) {
+            this.afterDelete(key);
+        }
+    }
+
+    /**
+     * 在当前事务提交后执行, 不在事务中时立即执行
+     * @param task 操作
+     */
+    protected void runAfterCommit(Runnable task) {
+        if (CacheInvalidationBuffer.isActive()) {
+            this.getBuffer().addTask(task);
+        } else {
+            task.run();
         }
     }
 
+    boolean hasNearCache() {
+        return nearCache != null;
+    }
+
+    private CacheInvalidationBuffer getBuffer() {
+        return CacheInvalidationBuffer.current(stringRedisTemplate, invalidator);
+    }
+
+    /**
+     * 事务中的删除会推迟到提交之后执行
+     */
     @Override
     public void deleteAll() {
-        Set<String> keys = getRedisTemplate().keys(String.format("%s:%s:*", this.getPrefix(), this.getSelfPrefix()));
-        getRedisTemplate().delete(keys);
+        if (CacheInvalidationBuffer.isActive()) {
+            this.getBuffer().deleteAll(this);
+            return;
+        }
+        this.doDeleteAll();
+    }
+
+    void doDeleteAll() {
+        Long current = stringRedisTemplate.opsForValue().increment(this.getGenerationKey(), 1);
+        this.updateGeneration(current);
+        stats.recordInvalidation();
+        if (nearCache != null) {
+            nearCache.invalidateAll();
+        }
+        invalidator.publishAll(this.getSelfPrefix());
         if (this.getLogger().isDebugEnabled()) {
-            this.getLogger().debug("Delete all");
+            this.getLogger().debug("Delete all, generation: {}", current);
+        }
+    }
+
+    /**
+     * 使用SCAN清理旧代数的键, 不会长时间阻塞redis
+     * @param batchSize 每批扫描和删除的数量
+     * @return 清理的键数量
+     */
+    long sweep(final int batchSize) {
+        final String pattern = String.format("%s:%s:", this.getPrefix().toUpperCase(), this.getSelfPrefix().toUpperCase());
+        final long current = this.loadGeneration();
+        return stringRedisTemplate.execute((RedisCallback<Long>) connection -> {
+            long count = 0;
+            List<byte[]> expired = new ArrayList<>(batchSize);
+            ScanOptions options = ScanOptions.scanOptions().match(pattern + "*").count(batchSize).build();
+            try (Cursor<byte[]> cursor = connection.scan(options)) {
+                while (cursor.hasNext()) {
+                    byte[] rawKey = cursor.next();
+                    String key = new String(rawKey, StandardCharsets.UTF_8);
+                    if (this.isExpiredGeneration(key.substring(pattern.length()), current)) {
+                        expired.add(rawKey);
+                    }
+                    if (expired.size() >= batchSize) {
+                        count += this.deleteRawKeys(connection, expired);
+                    }
+                }
+            } catch (IOException e) {
+                this.getLogger().warn("Close scan cursor error", e);
+            }
+            count += this.deleteRawKeys(connection, expired);
+            return count;
+        });
+    }
+
+    /**
+     * 没有代数(旧格式)或代数小于当前代数的键都视为过期
+     */
+    private boolean isExpiredGeneration(String rest, long current) {
+        int index = rest.indexOf(':');
+        if (index <= 0) {
+            return true;
+        }
+        try {
+            return Long.parseLong(rest.substring(0, index)) < current;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private long deleteRawKeys(RedisConnection connection, List<byte[]> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        connection.del(keys.toArray(new byte[keys.size()][]));
+        long count = keys.size();
+        keys.clear();
+        return count;
+    }
+
+    /**
+     * 仅使本节点的近端缓存失效, 由其他节点的通知触发
+     * @param key 键
+     */
+    void evictLocal(String key) {
+        stats.recordRemoteInvalidation();
+        if (nearCache != null) {
+            nearCache.invalidate(key);
+        }
+    }
+
+    /**
+     * 仅使本节点的所有近端缓存失效, 同时重新读取代数, 由其他节点的通知触发
+     */
+    void evictLocalAll() {
+        stats.recordRemoteInvalidation();
+        generationLoaded = false;
+        if (nearCache != null) {
+            nearCache.invalidateAll();
         }
     }
 }
@@ -0,0 +1,145 @@
+package win.scolia.cloud.sso.util.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 事务中的缓存失效操作先放入缓冲区, 提交后再用一次管道批量执行, 回滚时直接丢弃
+ * 避免在事务中占用数据库连接等待redis, 也避免并发读取在提交前把旧值重新写入缓存
+ */
+class CacheInvalidationBuffer extends TransactionSynchronizationAdapter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheInvalidationBuffer.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final CacheInvalidator invalidator;
+
+    private final Map<BaseCacheUtils<?>, Set<String>> deletes = new LinkedHashMap<>();
+
+    private final Set<BaseCacheUtils<?>> deleteAlls = new LinkedHashSet<>();
+
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    private CacheInvalidationBuffer(StringRedisTemplate stringRedisTemplate, CacheInvalidator invalidator) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.invalidator = invalidator;
+    }
+
+    /**
+     * @return 当前是否处于事务中
+     */
+    static boolean isActive() {
+        return TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    /**
+     * 获取当前事务的缓冲区, 不存在时创建并注册到事务
+     */
+    static CacheInvalidationBuffer current(StringRedisTemplate stringRedisTemplate, CacheInvalidator invalidator) {
+        CacheInvalidationBuffer buffer =
+                (CacheInvalidationBuffer) TransactionSynchronizationManager.getResource(CacheInvalidationBuffer.class);
+        if (buffer == null) {
+            buffer = new CacheInvalidationBuffer(stringRedisTemplate, invalidator);
+            TransactionSynchronizationManager.bindResource(CacheInvalidationBuffer.class, buffer);
+            TransactionSynchronizationManager.registerSynchronization(buffer);
+        }
+        return buffer;
+    }
+
+    void delete(BaseCacheUtils<?> cache, String key) {
+        deletes.computeIfAbsent(cache, c -> new LinkedHashSet<>()).add(key);
+    }
+
+    void deleteAll(BaseCacheUtils<?> cache) {
+        deleteAlls.add(cache);
+    }
+
+    <T> void refresh(BaseCacheUtils<T> cache, String key, Supplier<T> loader) {
+        tasks.add(() -> cache.doRefresh(key, loader));
+    }
+
+    /**
+     * 其他需要在提交后执行的操作, 在删除之后按添加顺序执行
+     */
+    void addTask(Runnable task) {
+        tasks.add(task);
+    }
+
+    @Override
+    public void afterCommit() {
+        try {
+            this.flushPending();
+        } catch (RuntimeException e) {
+            LOGGER.error("Flush cache invalidation error", e);
+        }
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(CacheInvalidationBuffer.class);
+    }
+
+    /**
+     * 先在一个管道中完成所有的删除和通知, 再处理全部删除, 写穿和其他操作
+     */
+    private void flushPending() {
+        if (!deletes.isEmpty()) {
+            for (Map.Entry<BaseCacheUtils<?>, Set<String>> entry : deletes.entrySet()) {
+                entry.getKey().beforeDelete(entry.getValue());
+            }
+            final List<byte[]> keys = new ArrayList<>();
+            final List<byte[]> messages = new ArrayList<>();
+            for (Map.Entry<BaseCacheUtils<?>, Set<String>> entry : deletes.entrySet()) {
+                BaseCacheUtils<?> cache = entry.getKey();
+                for (String key : entry.getValue()) {
+                    keys.add(this.toBytes(cache.getCacheKey(cache.getSelfPrefix(), key)));
+                    if (cache.hasNearCache()) {
+                        messages.add(this.toBytes(invalidator.getMessage(cache.getSelfPrefix(), key)));
+                    }
+                }
+            }
+            final byte[] channel = this.toBytes(invalidator.getChannel());
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.del(keys.toArray(new byte[keys.size()][]));
+                for (byte[] message : messages) {
+                    connection.publish(channel, message);
+                }
+                return null;
+            });
+            for (Map.Entry<BaseCacheUtils<?>, Set<String>> entry : deletes.entrySet()) {
+                for (String key : entry.getValue()) {
+                    entry.getKey().afterDelete(key);
+                }
+            }
+        }
+        for (BaseCacheUtils<?> cache : deleteAlls) {
+            cache.doDeleteAll();
+        }
+        for (Runnable task : tasks) {
+            task.run();
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Flush cache invalidation, delete: {}, delete all: {}, task: {}",
+                    deletes.values().stream().mapToInt(Set::size).sum(), deleteAlls.size(), tasks.size());
+        }
+    }
+
+    private byte[] toBytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
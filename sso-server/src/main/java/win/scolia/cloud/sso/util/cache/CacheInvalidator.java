@@ -0,0 +1,96 @@
+package win.scolia.cloud.sso.util.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import win.scolia.cloud.sso.autoconfigure.SSOProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 通过redis的发布订阅, 在所有节点间同步近端缓存的失效
+ * 消息格式: "SELF_PREFIX:KEY" 表示单个键失效, "SELF_PREFIX" 表示该缓存全部失效
+ */
+@Component
+public class CacheInvalidator implements MessageListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheInvalidator.class);
+
+    private static final String CHANNEL_SUFFIX = "CACHE_INVALIDATION";
+
+    @Autowired
+    private SSOProperties properties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Map<String, BaseCacheUtils<?>> caches = new ConcurrentHashMap<>();
+
+    /**
+     * 获取订阅的频道名
+     * @return 频道名
+     */
+    public String getChannel() {
+        return String.format("%s:%s", properties.getCache().getPrefix().toUpperCase(), CHANNEL_SUFFIX);
+    }
+
+    /**
+     * 注册缓存工具, 以便接收到消息时分发
+     * @param cacheUtils 缓存工具
+     */
+    void register(BaseCacheUtils<?> cacheUtils) {
+        caches.put(cacheUtils.getSelfPrefix().toUpperCase(), cacheUtils);
+    }
+
+    /**
+     * 通知所有节点某个键失效
+     * @param selfPrefix 缓存前缀
+     * @param key 键
+     */
+    void publish(String selfPrefix, String key) {
+        stringRedisTemplate.convertAndSend(this.getChannel(), this.getMessage(selfPrefix, key));
+    }
+
+    /**
+     * 单个键失效的消息
+     * @param selfPrefix 缓存前缀
+     * @param key 键
+     * @return 消息内容
+     */
+    String getMessage(String selfPrefix, String key) {
+        return String.format("%s:%s", selfPrefix.toUpperCase(), key.toUpperCase());
+    }
+
+    /**
+     * 通知所有节点该缓存全部失效
+     * @param selfPrefix 缓存前缀
+     */
+    void publishAll(String selfPrefix) {
+        stringRedisTemplate.convertAndSend(this.getChannel(), selfPrefix.toUpperCase());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(':');
+        String selfPrefix = index < 0 ? body : body.substring(0, index);
+        BaseCacheUtils<?> cacheUtils = caches.get(selfPrefix);
+        if (cacheUtils == null) {
+            return;
+        }
+        if (index < 0) {
+            cacheUtils.evictLocalAll();
+        } else {
+            cacheUtils.evictLocal(body.substring(index + 1));
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Invalidate: {}", body);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package win.scolia.cloud.sso.util.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import win.scolia.cloud.sso.autoconfigure.SSOProperties;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 执行提前刷新的后台线程池, 队列满时直接放弃, 读取方继续使用旧值
+ */
+@Component
+public class CacheRefresher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheRefresher.class);
+
+    @Autowired
+    private SSOProperties properties;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        SSOProperties.Cache cache = properties.getCache();
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(cache.getRefreshThreads(), cache.getRefreshThreads(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(cache.getRefreshQueueSize()), r -> {
+            Thread thread = new Thread(r, "sso-cache-refresh-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交刷新任务
+     * @param task 任务
+     * @return 是否提交成功
+     */
+    public boolean submit(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Refresh rejected, queue: {}", executor.getQueue().size());
+            }
+            return false;
+        }
+    }
+}
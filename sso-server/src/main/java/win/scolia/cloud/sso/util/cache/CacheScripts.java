@@ -0,0 +1,97 @@
+package win.scolia.cloud.sso.util.cache;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+/**
+ * 缓存使用的lua脚本, 通过EVALSHA执行, 服务端没有加载时自动回退为EVAL
+ */
+final class CacheScripts {
+
+    /**
+     * 读取并刷新过期时间, 一次往返完成, 返回 [值, 剩余时间(毫秒)]
+     * KEYS[1]: 键
+     * ARGV[1]: 过期时间, 单位秒
+     * ARGV[2]: 刷新阈值, 剩余时间不小于该值时不刷新, 小于等于0时总是刷新
+     * ARGV[3]: 空值标记, 空值标记不刷新
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> GET_AND_TOUCH = new DefaultRedisScript<>(
+            "local value = redis.call('GET', KEYS[1])\n" +
+            "if value and value ~= ARGV[3] then\n" +
+            "    local threshold = tonumber(ARGV[2])\n" +
+            "    if threshold <= 0 or redis.call('TTL', KEYS[1]) < threshold then\n" +
+            "        redis.call('EXPIRE', KEYS[1], ARGV[1])\n" +
+            "    end\n" +
+            "end\n" +
+            "return {value, redis.call('PTTL', KEYS[1])}", List.class);
+
+    /**
+     * 批量读取并刷新过期时间, 规则与 GET_AND_TOUCH 相同, 返回值的列表, 不存在的键为nil
+     * KEYS: 键
+     * ARGV: 同 GET_AND_TOUCH
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> MULTI_GET_AND_TOUCH = new DefaultRedisScript<>(
+            "local values = redis.call('MGET', unpack(KEYS))\n" +
+            "local threshold = tonumber(ARGV[2])\n" +
+            "for i, value in ipairs(values) do\n" +
+            "    if value and value ~= ARGV[3] then\n" +
+            "        if threshold <= 0 or redis.call('TTL', KEYS[i]) < threshold then\n" +
+            "            redis.call('EXPIRE', KEYS[i], ARGV[1])\n" +
+            "        end\n" +
+            "    end\n" +
+            "end\n" +
+            "return values", List.class);
+
+    /**
+     * 读取值和剩余时间, 返回 [值, 剩余时间(毫秒)]
+     * KEYS[1]: 键
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> GET_WITH_TTL = new DefaultRedisScript<>(
+            "return {redis.call('GET', KEYS[1]), redis.call('PTTL', KEYS[1])}", List.class);
+
+    /**
+     * 键存在时改名并设置过期时间, 用于取出整个集合后分批处理, 改名是O(1)的
+     * KEYS[1]: 原来的键
+     * KEYS[2]: 新的键
+     * ARGV[1]: 新键的过期时间, 单位秒
+     */
+    static final RedisScript<Long> RENAME_IF_EXISTS = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then\n" +
+            "    return 0\n" +
+            "end\n" +
+            "redis.call('RENAME', KEYS[1], KEYS[2])\n" +
+            "redis.call('EXPIRE', KEYS[2], ARGV[1])\n" +
+            "return 1", Long.class);
+
+    /**
+     * 吊销访问令牌, 同时清理已过期的记录, 只有首次吊销时返回1
+     * KEYS[1]: 吊销列表的键
+     * ARGV[1]: 令牌id
+     * ARGV[2]: 令牌的过期时间, 单位秒
+     * ARGV[3]: 当前时间, 单位秒
+     */
+    static final RedisScript<Long> DENY_TOKEN = new DefaultRedisScript<>(
+            "local added = redis.call('ZADD', KEYS[1], 'NX', ARGV[2], ARGV[1])\n" +
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', ARGV[3])\n" +
+            "return added", Long.class);
+
+    /**
+     * 获取一个到期自动释放的锁, 获取成功时返回1
+     * KEYS[1]: 锁的键
+     * ARGV[1]: 持有者
+     * ARGV[2]: 过期时间, 单位秒
+     */
+    static final RedisScript<Long> TRY_LOCK = new DefaultRedisScript<>(
+            "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'EX', ARGV[2]) then\n" +
+            "    return 1\n" +
+            "end\n" +
+            "return 0", Long.class);
+
+    private CacheScripts() {
+    }
+}
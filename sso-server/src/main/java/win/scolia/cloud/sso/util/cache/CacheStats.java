@@ -0,0 +1,144 @@
+package win.scolia.cloud.sso.util.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个缓存的统计信息, 使用 LongAdder 减少热点路径上的竞争
+ */
+public class CacheStats {
+
+    private final String name;
+
+    private final LongAdder nearHits = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder missingHits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder loadFailures = new LongAdder();
+
+    private final LongAdder earlyRefreshes = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    private final LongAdder remoteInvalidations = new LongAdder();
+
+    private final LatencyHistogram redisLatency = new LatencyHistogram();
+
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+
+    public CacheStats(String name) {
+        this.name = name;
+    }
+
+    void recordNearHit() {
+        nearHits.increment();
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMissingHit() {
+        missingHits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordRedis(long nanos) {
+        redisLatency.record(nanos);
+    }
+
+    void recordLoad(long nanos) {
+        loadLatency.record(nanos);
+    }
+
+    void recordLoadFailure() {
+        loadFailures.increment();
+    }
+
+    void recordEarlyRefresh() {
+        earlyRefreshes.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    void recordInvalidation() {
+        invalidations.increment();
+    }
+
+    void recordRemoteInvalidation() {
+        remoteInvalidations.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getNearHits() {
+        return nearHits.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return 命中空值标记的次数
+     */
+    public long getMissingHits() {
+        return missingHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 命中率, 近端命中和空值标记都算作命中, 没有请求时返回0
+     */
+    public double getHitRatio() {
+        long hit = this.getNearHits() + this.getHits() + this.getMissingHits();
+        long total = hit + this.getMisses();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    public long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    /**
+     * @return 过期前提前刷新的次数
+     */
+    public long getEarlyRefreshes() {
+        return earlyRefreshes.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public long getRemoteInvalidations() {
+        return remoteInvalidations.sum();
+    }
+
+    public LatencyHistogram getRedisLatency() {
+        return redisLatency;
+    }
+
+    public LatencyHistogram getLoadLatency() {
+        return loadLatency;
+    }
+}
@@ -0,0 +1,103 @@
+package win.scolia.cloud.sso.util.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import win.scolia.cloud.sso.autoconfigure.SSOProperties;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 后台定期清理旧代数的缓存键, 回收redis内存
+ */
+@Component
+public class CacheSweeper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheSweeper.class);
+
+    private static final String SWEEP_LOCK_PREFIX = "SWEEP_LOCK";
+
+    @Autowired
+    private SSOProperties properties;
+
+    @Autowired
+    private List<BaseCacheUtils<?>> caches;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 本节点的标识, 写入锁中便于排查是哪个节点在清理
+     */
+    private final String owner = UUID.randomUUID().toString();
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        int interval = properties.getCache().getSweepInterval();
+        if (interval <= 0) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sso-cache-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 依次清理每个缓存, 单个缓存出错不影响其他缓存
+     * 每个清理间隔内只有取得锁的一个节点执行, 锁不主动释放, 到期后下一轮再竞争
+     */
+    public void sweep() {
+        try {
+            if (!this.tryLock()) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Sweep skipped, another node holds the lock");
+                }
+                return;
+            }
+        } catch (Exception e) {
+            // 异常会取消定时任务, 这里只记录, 等待下一轮
+            LOGGER.error("Sweep lock error", e);
+            return;
+        }
+        int batchSize = properties.getCache().getSweepBatchSize();
+        for (BaseCacheUtils<?> cache : caches) {
+            try {
+                long count = cache.sweep(batchSize);
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Sweep {}: {} keys", cache.getSelfPrefix(), count);
+                }
+            } catch (Exception e) {
+                LOGGER.error("Sweep {} error", cache.getSelfPrefix(), e);
+            }
+        }
+    }
+
+    private boolean tryLock() {
+        String key = String.format("%s:%s", properties.getCache().getPrefix().toUpperCase(), SWEEP_LOCK_PREFIX);
+        long expire = Math.max(1, properties.getCache().getSweepInterval());
+        Long locked = stringRedisTemplate.execute(CacheScripts.TRY_LOCK, Collections.singletonList(key), owner,
+                String.valueOf(expire));
+        return locked != null && locked == 1;
+    }
+}
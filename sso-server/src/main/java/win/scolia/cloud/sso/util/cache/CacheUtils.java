@@ -1,27 +1,94 @@
 package win.scolia.cloud.sso.util.cache;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
 public interface CacheUtils<T> {
 
     /**
      * 缓存对象
      * @param key 键
-     * @param target 缓存目标
+     * @param target 缓存目标, 为null时缓存空值标记, 使用较短的过期时间
      */
     void cache(String key, T target);
 
     /**
      * 获取缓存
      * @param key 键
-     * @return 缓存对象/null
+     * @return 缓存对象/null(未缓存或空值标记)
      */
     T get(String key);
 
+    /**
+     * 获取缓存, 可以区分未缓存和空值标记
+     * @param key 键
+     * @return 未缓存时返回null
+     */
+    CacheValue<T> getValue(String key);
+
+    /**
+     * 获取缓存, 未缓存时使用加载器加载并缓存, 同一个键同时只有一个线程执行加载, 其他线程等待其结果
+     * @param key 键
+     * @param loader 加载器, 返回null时缓存空值标记
+     * @return 缓存对象/null
+     */
+    T get(String key, Supplier<T> loader);
+
+    /**
+     * 批量获取缓存, 只需要一次网络往返
+     * @param keys 键
+     * @return 命中的缓存, 命中空值标记的键对应的值为null, 未缓存的键不包含在结果中
+     */
+    Map<String, T> multiGet(Collection<String> keys);
+
+    /**
+     * 批量获取缓存, 未缓存的键一次性交给加载器加载并批量缓存
+     * @param keys 键
+     * @param loader 加载器, 参数为未缓存的键, 结果中不包含的键会缓存空值标记
+     * @return 所有键对应的缓存对象
+     */
+    Map<String, T> multiGet(Collection<String> keys, Function<Collection<String>, Map<String, T>> loader);
+
+    /**
+     * 使用管道批量缓存对象
+     * @param targets 键和缓存目标, 缓存目标为null时缓存空值标记
+     */
+    void multiCache(Map<String, T> targets);
+
+    /**
+     * 使用管道批量缓存对象, 只写入尚未缓存的键, 不会覆盖其他节点写入的较新的值
+     * @param targets 键和缓存目标, 缓存目标为null时缓存空值标记
+     */
+    void multiCacheIfAbsent(Map<String, T> targets);
+
+    /**
+     * 数据变更后刷新缓存, 开启了写穿时重新加载并写入, 否则删除缓存
+     * @param key 键
+     * @param loader 加载器, 返回null时缓存空值标记
+     */
+    void refresh(String key, Supplier<T> loader);
+
+    /**
+     * 批量刷新缓存, 开启了写穿时一次加载并用管道写入, 否则用管道删除, 事务中会推迟到提交之后执行
+     * @param keys 键
+     * @param loader 加载器, 参数为所有的键, 结果中不包含的键会缓存空值标记
+     */
+    void multiRefresh(Collection<String> keys, Function<Collection<String>, Map<String, T>> loader);
+
     /**
      * 根据键删除缓存对象
      * @param key 键
      */
     void delete(String key);
 
+    /**
+     * 使用管道批量删除缓存对象
+     * @param keys 键
+     */
+    void multiDelete(Collection<String> keys);
+
     /**
      * 删除所有的缓存
      */
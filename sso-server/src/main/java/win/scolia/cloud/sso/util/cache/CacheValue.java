@@ -0,0 +1,52 @@
+package win.scolia.cloud.sso.util.cache;
+
+/**
+ * 缓存的值, 用于区分"未缓存"和"缓存了不存在的记录(空值标记)"
+ */
+public final class CacheValue<T> {
+
+    private static final CacheValue<?> MISSING = new CacheValue<>(null, -1);
+
+    private final T value;
+
+    /**
+     * 从redis读取时的剩余时间, 单位毫秒, 未知时为-1
+     */
+    private final long ttl;
+
+    private CacheValue(T value, long ttl) {
+        this.value = value;
+        this.ttl = ttl;
+    }
+
+    public static <T> CacheValue<T> of(T value) {
+        return of(value, -1);
+    }
+
+    static <T> CacheValue<T> of(T value, long ttl) {
+        return value == null ? missing() : new CacheValue<>(value, ttl);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> CacheValue<T> missing() {
+        return (CacheValue<T>) MISSING;
+    }
+
+    /**
+     * @return 缓存的对象, 空值标记时返回null
+     */
+    public T get() {
+        return value;
+    }
+
+    /**
+     * @return 是否为空值标记
+     */
+    public boolean isMissing() {
+        return value == null;
+    }
+
+    long getTtl() {
+        return ttl;
+    }
+}
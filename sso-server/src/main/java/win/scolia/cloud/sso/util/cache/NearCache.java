@@ -0,0 +1,108 @@
+package win.scolia.cloud.sso.util.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内的近端缓存(L1), 位于redis缓存之前, 受容量和过期时间限制
+ * 使用按访问排序的LinkedHashMap, 超出容量时淘汰最久未访问的条目, 所有操作都是O(1), 由同一把锁保护
+ */
+public class NearCache<T> {
+
+    private final Map<String, Entry<T>> entries;
+
+    private final long expireNanos;
+
+    /**
+     * @param maxSize 最大条目数
+     * @param expire  过期时间, 单位秒
+     */
+    public NearCache(int maxSize, long expire) {
+        this.expireNanos = TimeUnit.SECONDS.toNanos(expire);
+        this.entries = new LinkedHashMap<String, Entry<T>>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+                return this.size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存
+     * @param key 键
+     * @return 缓存对象/null
+     */
+    public T get(String key) {
+        synchronized (entries) {
+            Entry<T> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(System.nanoTime())) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    /**
+     * 缓存对象, 超出容量时淘汰最久未访问的条目, 过期的条目在读取时清理或随访问顺序被淘汰
+     * @param key 键
+     * @param value 缓存目标
+     */
+    public void put(String key, T value) {
+        if (value == null) {
+            return;
+        }
+        Entry<T> entry = new Entry<>(value, System.nanoTime() + expireNanos);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * 使某个键失效
+     * @param key 键
+     */
+    public void invalidate(String key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * 使所有的键失效
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static class Entry<T> {
+
+        private final T value;
+
+        private final long expireAt;
+
+        private Entry(T value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expireAt >= 0;
+        }
+    }
+}
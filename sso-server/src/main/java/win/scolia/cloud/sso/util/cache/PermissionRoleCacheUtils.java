@@ -0,0 +1,38 @@
+package win.scolia.cloud.sso.util.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * 权限 -> 拥有该权限的角色名 的反向索引, 权限变更时只刷新相关角色的 角色-权限 缓存
+ */
+@Component
+public class PermissionRoleCacheUtils extends BaseCacheUtils<Set<String>> {
+
+    private static final String PERMISSION_ROLE_PREFIX = "PERMISSION_ROLE";
+
+    private static Logger LOGGER = LoggerFactory.getLogger(PermissionRoleCacheUtils.class);
+
+    @Autowired
+    private RedisTemplate<String, Set<String>> redisTemplate;
+
+    @Override
+    protected String getSelfPrefix() {
+        return PERMISSION_ROLE_PREFIX;
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return LOGGER;
+    }
+
+    @Override
+    protected RedisTemplate<String, Set<String>> getRedisTemplate() {
+        return redisTemplate;
+    }
+}
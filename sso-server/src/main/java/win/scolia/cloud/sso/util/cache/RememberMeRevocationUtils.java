@@ -0,0 +1,49 @@
+package win.scolia.cloud.sso.util.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import win.scolia.cloud.sso.autoconfigure.SSOProperties;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录每个用户记住我的吊销时间, 在此之前签发的记住我cookie全部无效
+ * cookie保存在客户端, 无法直接删除, 只能在恢复身份时检查
+ */
+@Component
+public class RememberMeRevocationUtils {
+
+    private static final String REMEMBER_ME_REVOKED_PREFIX = "REMEMBER_ME_REVOKED";
+
+    @Autowired
+    private SSOProperties properties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private String getKey(String userName) {
+        return String.format("%s:%s:%s", properties.getCache().getPrefix().toUpperCase(), REMEMBER_ME_REVOKED_PREFIX,
+                userName.toUpperCase());
+    }
+
+    /**
+     * 吊销用户所有的记住我cookie
+     * @param userName 用户名
+     * @param expire 记录保留的时间, 不小于cookie的有效期, 单位秒
+     */
+    public void revoke(String userName, long expire) {
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        stringRedisTemplate.opsForValue().set(this.getKey(userName), String.valueOf(now), expire, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 获取用户的吊销时间, 只在通过记住我恢复身份时读取
+     * @param userName 用户名
+     * @return 吊销时间, 单位秒, 没有记录时返回0
+     */
+    public long getRevokedAt(String userName) {
+        String value = stringRedisTemplate.opsForValue().get(this.getKey(userName));
+        return value == null ? 0 : Long.parseLong(value);
+    }
+}
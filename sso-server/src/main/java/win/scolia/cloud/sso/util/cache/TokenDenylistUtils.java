@@ -0,0 +1,119 @@
+package win.scolia.cloud.sso.util.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import win.scolia.cloud.sso.autoconfigure.SSOProperties;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已吊销的访问令牌列表, 保存在redis的有序集合中, 分数为令牌的过期时间, 过期后自动清理
+ * 只记录尚未过期的令牌id, 列表很小, 各节点定期拉取整个列表在本地检查
+ * 集合只在吊销时清理, 不设置过期时间, 避免较早过期的令牌缩短整个集合的存活时间
+ * 另外为每个用户记录一个吊销时间, 在此之前登录得到的令牌全部无效
+ */
+@Component
+public class TokenDenylistUtils {
+
+    private static final String TOKEN_DENYLIST_PREFIX = "TOKEN_DENYLIST";
+
+    private static final String TOKEN_NOT_BEFORE_PREFIX = "TOKEN_NOT_BEFORE";
+
+    @Autowired
+    private SSOProperties properties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private volatile Set<String> snapshot = Collections.emptySet();
+
+    private volatile long loadedAt;
+
+    private volatile boolean loaded = false;
+
+    private String getKey() {
+        return String.format("%s:%s", properties.getCache().getPrefix().toUpperCase(), TOKEN_DENYLIST_PREFIX);
+    }
+
+    private String getNotBeforeKey(String userName) {
+        return String.format("%s:%s:%s", properties.getCache().getPrefix().toUpperCase(), TOKEN_NOT_BEFORE_PREFIX,
+                userName.toUpperCase());
+    }
+
+    /**
+     * 吊销令牌, 同时清理已过期的记录
+     * @param tokenId 令牌id
+     * @param expiresAt 令牌的过期时间, 单位秒
+     * @return 是否为首次吊销, 令牌已被吊销时返回false
+     */
+    public boolean add(String tokenId, long expiresAt) {
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        Long added = stringRedisTemplate.execute(CacheScripts.DENY_TOKEN, Collections.singletonList(this.getKey()),
+                tokenId, String.valueOf(expiresAt), String.valueOf(now));
+        if (added == null || added == 0) {
+            return false;
+        }
+        synchronized (this) {
+            Set<String> current = new HashSet<>(snapshot);
+            current.add(tokenId);
+            snapshot = Collections.unmodifiableSet(current);
+        }
+        return true;
+    }
+
+    /**
+     * 吊销用户当前已签发的所有令牌, 记录当前时间, 之前登录得到的令牌全部无效
+     * @param userName 用户名
+     * @param expire 记录保留的时间, 不小于令牌可以刷新的最长时间, 单位秒
+     */
+    public void revokeUser(String userName, long expire) {
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        stringRedisTemplate.opsForValue().set(this.getNotBeforeKey(userName), String.valueOf(now), expire, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 获取用户的吊销时间, 直接读取redis, 只用于刷新和吊销等低频操作
+     * @param userName 用户名
+     * @return 吊销时间, 单位秒, 没有记录时返回0
+     */
+    public long getNotBefore(String userName) {
+        String value = stringRedisTemplate.opsForValue().get(this.getNotBeforeKey(userName));
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    /**
+     * 检查令牌是否已被吊销, 使用本地的列表, 其他节点的吊销最多延迟一个刷新间隔
+     * @param tokenId 令牌id
+     * @return 是否已吊销
+     */
+    public boolean contains(String tokenId) {
+        return this.list().contains(tokenId);
+    }
+
+    /**
+     * 获取所有尚未过期的已吊销令牌id, 供下游服务同步
+     * @return 令牌id
+     */
+    public Set<String> list() {
+        long now = System.nanoTime();
+        long refresh = TimeUnit.SECONDS.toNanos(properties.getToken().getDenylistRefresh());
+        if (loaded && now - loadedAt < refresh) {
+            return snapshot;
+        }
+        synchronized (this) {
+            if (loaded && now - loadedAt < refresh) {
+                return snapshot;
+            }
+            long seconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+            Set<String> members = stringRedisTemplate.opsForZSet().rangeByScore(this.getKey(), seconds, Double.MAX_VALUE);
+            snapshot = members == null ? Collections.emptySet() : Collections.unmodifiableSet(members);
+            loadedAt = System.nanoTime();
+            loaded = true;
+            return snapshot;
+        }
+    }
+}
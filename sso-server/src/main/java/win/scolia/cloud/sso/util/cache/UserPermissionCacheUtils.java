@@ -0,0 +1,71 @@
+package win.scolia.cloud.sso.util.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * 用户的有效权限(所有角色权限的并集), 鉴权时只需要一次查找
+ * 与 用户-角色 缓存共用 角色 -> 用户 的反向索引, 角色和权限变更时只处理相关的用户
+ * 过期时间固定, 读取时不刷新, 保证反向索引总是比缓存活得更久
+ */
+@Component
+public class UserPermissionCacheUtils extends BaseCacheUtils<Set<String>> {
+
+    private static final String USER_PERMISSION_PREFIX = "USER_PERMISSION";
+
+    private static Logger LOGGER = LoggerFactory.getLogger(UserPermissionCacheUtils.class);
+
+    @Autowired
+    private RedisTemplate<String, Set<String>> redisTemplate;
+
+    @Autowired
+    private UserRoleCacheUtils userRoleCacheUtils;
+
+    @Autowired
+    private AuthorizationCacheUtils authorizationCacheUtils;
+
+    @Override
+    protected String getSelfPrefix() {
+        return USER_PERMISSION_PREFIX;
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return LOGGER;
+    }
+
+    @Override
+    protected RedisTemplate<String, Set<String>> getRedisTemplate() {
+        return redisTemplate;
+    }
+
+    @Override
+    protected boolean isFlush() {
+        return false;
+    }
+
+    /**
+     * 清除拥有这些角色的用户的有效权限和鉴权信息, 事务中会推迟到提交之后执行
+     * 用户也在提交之后才从索引中获取, 避免遗漏提交之前新缓存的用户
+     * 新增权限时同样直接清除, 不在缓存上做增量合并: 读取和写回之间提交的撤销会被覆盖
+     * 用户按批从索引中读取并删除, 不会一次读取整个索引
+     * @param roleNames 角色名
+     */
+    public void deleteByRoles(Collection<String> roleNames) {
+        if (roleNames.isEmpty()) {
+            return;
+        }
+        Collection<String> targets = new ArrayList<>(roleNames);
+        this.runAfterCommit(() -> userRoleCacheUtils.forEachUsersByRoles(targets, userNames -> {
+            this.deleteNow(userNames);
+            authorizationCacheUtils.deleteNow(userNames);
+        }));
+    }
+}
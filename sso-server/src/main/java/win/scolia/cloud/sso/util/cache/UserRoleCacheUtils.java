@@ -1,23 +1,58 @@
 package win.scolia.cloud.sso.util.cache;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
 
+/**
+ * 用户-角色缓存, 同时维护 角色 -> 已缓存用户 的反向索引, 角色变更时只清除相关用户的缓存
+ * 用户的有效权限和 shiro 的鉴权信息缓存也使用该索引
+ * 用户的缓存被删除时从其角色的索引中移除, 索引的过期时间是用户-角色缓存最大过期时间的两倍, 每次加入用户时延长.
+ * 活跃用户的鉴权信息过期时间很短, 重新加载时会再次加入索引, 所以索引不会早于仍在使用的缓存过期
+ * 索引可能很大, 只通过SSCAN分批读取, 删除也分批进行
+ */
 @Component
 public class UserRoleCacheUtils extends BaseCacheUtils<Set<String>> {
 
     private static final String USER_ROLE_PREFIX = "USER_ROLE";
 
+    private static final String ROLE_USERS_PREFIX = "ROLE_USERS";
+
     private static Logger LOGGER = LoggerFactory.getLogger(UserRoleCacheUtils.class);
 
     @Autowired
     private RedisTemplate<String, Set<String>> redisTemplate;
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private UserPermissionCacheUtils userPermissionCacheUtils;
+
+    @Autowired
+    private AuthorizationCacheUtils authorizationCacheUtils;
+
     @Override
     protected String getSelfPrefix() {
         return USER_ROLE_PREFIX;
@@ -32,4 +67,172 @@ public class UserRoleCacheUtils extends BaseCacheUtils<Set<String>> {
     protected RedisTemplate<String, Set<String>> getRedisTemplate() {
         return redisTemplate;
     }
+
+    /**
+     * 反向索引的键, 不带代数, 也不能落在 PREFIX:USER_ROLE:* 的范围内
+     */
+    private String getIndexKey(String roleName) {
+        return String.format("%s:%s:%s", this.getPrefix().toUpperCase(), ROLE_USERS_PREFIX, roleName.toUpperCase());
+    }
+
+    private long getIndexExpire() {
+        return this.getMaxExpire() * 2;
+    }
+
+    @Override
+    public void cache(String key, Set<String> target) {
+        this.index(key, target);
+        super.cache(key, target);
+    }
+
+    @Override
+    public void multiCache(Map<String, Set<String>> targets) {
+        this.index(targets);
+        super.multiCache(targets);
+    }
+
+    @Override
+    public void multiCacheIfAbsent(Map<String, Set<String>> targets) {
+        this.index(targets);
+        super.multiCacheIfAbsent(targets);
+    }
+
+    /**
+     * 把用户加入其每个角色的索引, 需要在写入依赖该索引的缓存之前调用
+     * @param userName 用户名
+     * @param roleNames 用户的角色
+     */
+    public void index(String userName, Set<String> roleNames) {
+        if (StringUtils.isEmpty(userName) || roleNames == null || roleNames.isEmpty()) {
+            return;
+        }
+        this.index(Collections.singletonMap(userName, roleNames));
+    }
+
+    /**
+     * 分批获取拥有这些角色的已缓存用户, 每个索引使用SSCAN读取, 不会一次读取整个索引
+     * 拥有多个角色的用户可能出现在多个批次中
+     * @param roleNames 角色名
+     * @param consumer 处理每一批用户名(大写)
+     */
+    public void forEachUsersByRoles(Collection<String> roleNames, Consumer<List<String>> consumer) {
+        for (String roleName : new LinkedHashSet<>(roleNames)) {
+            if (!StringUtils.isEmpty(roleName)) {
+                this.scan(this.getIndexKey(roleName), consumer);
+            }
+        }
+    }
+
+    private void scan(String indexKey, Consumer<List<String>> consumer) {
+        int batchSize = this.getBatchSize();
+        ScanOptions options = ScanOptions.scanOptions().count(batchSize).build();
+        Set<String> batch = new LinkedHashSet<>();
+        try (Cursor<String> cursor = stringRedisTemplate.opsForSet().scan(indexKey, options)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() >= batchSize) {
+                    consumer.accept(new ArrayList<>(batch));
+                    batch.clear();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Close scan cursor error", e);
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(new ArrayList<>(batch));
+        }
+    }
+
+    /**
+     * 使用管道把用户加入其每个角色的索引, 同时延长索引的过期时间
+     */
+    private void index(final Map<String, Set<String>> targets) {
+        final long expire = this.getIndexExpire();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, Set<String>> entry : targets.entrySet()) {
+                if (StringUtils.isEmpty(entry.getKey()) || entry.getValue() == null) {
+                    continue;
+                }
+                byte[] member = entry.getKey().toUpperCase().getBytes(StandardCharsets.UTF_8);
+                for (String roleName : entry.getValue()) {
+                    byte[] indexKey = this.getIndexKey(roleName).getBytes(StandardCharsets.UTF_8);
+                    connection.sAdd(indexKey, member);
+                    connection.expire(indexKey, expire);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 删除用户的缓存之前, 按缓存中的角色把用户从索引中移除
+     * 先移除索引再删除缓存, 之后重新缓存的用户会重新加入索引
+     */
+    @Override
+    void beforeDelete(Collection<String> keys) {
+        List<String> userNames = new ArrayList<>(keys);
+        List<String> cacheKeys = new ArrayList<>(userNames.size());
+        for (String userName : userNames) {
+            cacheKeys.add(this.getCacheKey(this.getSelfPrefix(), userName));
+        }
+        @SuppressWarnings("unchecked")
+        List<Object> values = ((RedisTemplate<String, Object>) (RedisTemplate) redisTemplate).opsForValue().multiGet(cacheKeys);
+        final Map<String, Set<String>> targets = new HashMap<>();
+        for (int i = 0; i < userNames.size(); i++) {
+            Object value = values == null ? null : values.get(i);
+            if (value instanceof Set) {
+                @SuppressWarnings("unchecked")
+                Set<String> roleNames = (Set<String>) value;
+                targets.put(userNames.get(i), roleNames);
+            }
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, Set<String>> entry : targets.entrySet()) {
+                byte[] member = entry.getKey().toUpperCase().getBytes(StandardCharsets.UTF_8);
+                for (String roleName : entry.getValue()) {
+                    connection.sRem(this.getIndexKey(roleName).getBytes(StandardCharsets.UTF_8), member);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 清除拥有该角色的用户的缓存, 事务中会推迟到提交之后执行
+     * @param roleName 角色名
+     */
+    public void deleteByRole(String roleName) {
+        if (StringUtils.isEmpty(roleName)) {
+            return;
+        }
+        this.runAfterCommit(() -> this.doDeleteByRole(roleName));
+    }
+
+    /**
+     * 先把索引改名取出, 之后加入的用户进入新的索引, 再分批清除取出的用户的缓存
+     */
+    private void doDeleteByRole(String roleName) {
+        String indexKey = this.getIndexKey(roleName);
+        String detachedKey = indexKey + ":" + UUID.randomUUID();
+        Long renamed = stringRedisTemplate.execute(CacheScripts.RENAME_IF_EXISTS, Arrays.asList(indexKey, detachedKey),
+                String.valueOf(this.getIndexExpire()));
+        if (renamed == null || renamed == 0) {
+            return;
+        }
+        long[] count = {0};
+        this.scan(detachedKey, userNames -> {
+            this.deleteNow(userNames);
+            userPermissionCacheUtils.deleteNow(userNames);
+            authorizationCacheUtils.deleteNow(userNames);
+            stringRedisTemplate.opsForSet().remove(detachedKey, userNames.toArray());
+            count[0] += userNames.size();
+        });
+        stringRedisTemplate.delete(detachedKey);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Delete by role {}: {} users", roleName, count[0]);
+        }
+    }
 }
@@ -0,0 +1,35 @@
+package win.scolia.cloud.sso.util.cache.codec;
+
+import win.scolia.cloud.sso.shiro.SSOAuthorizationInfo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 鉴权信息只保存角色和权限字符串, 编译后的结构在读取后按需重新计算
+ */
+public class AuthorizationInfoCodec implements CacheCodec<SSOAuthorizationInfo> {
+
+    private final StringSetCodec stringSetCodec = new StringSetCodec();
+
+    @Override
+    public void encode(SSOAuthorizationInfo target, DataOutput out) throws IOException {
+        stringSetCodec.encode(this.nonNull(target.getRoles()), out);
+        stringSetCodec.encode(this.nonNull(target.getStringPermissions()), out);
+    }
+
+    @Override
+    public SSOAuthorizationInfo decode(DataInput in) throws IOException {
+        SSOAuthorizationInfo info = new SSOAuthorizationInfo();
+        info.setRoles(stringSetCodec.decode(in));
+        info.setStringPermissions(stringSetCodec.decode(in));
+        return info;
+    }
+
+    private Set<String> nonNull(Set<String> target) {
+        return target == null ? Collections.emptySet() : target;
+    }
+}
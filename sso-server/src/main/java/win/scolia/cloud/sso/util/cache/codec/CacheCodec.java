@@ -0,0 +1,25 @@
+package win.scolia.cloud.sso.util.cache.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 缓存对象的编解码器, 每种缓存类型提供一个实现
+ */
+public interface CacheCodec<T> {
+
+    /**
+     * 编码
+     * @param target 缓存对象, 不为null
+     * @param out 输出
+     */
+    void encode(T target, DataOutput out) throws IOException;
+
+    /**
+     * 解码
+     * @param in 输入
+     * @return 缓存对象
+     */
+    T decode(DataInput in) throws IOException;
+}
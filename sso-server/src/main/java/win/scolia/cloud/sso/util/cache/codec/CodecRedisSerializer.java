@@ -0,0 +1,85 @@
+package win.scolia.cloud.sso.util.cache.codec;
+
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 使用 {@link CacheCodec} 的redis序列化器
+ * 二进制格式: 版本字节 + 类型字节(空值标记/对象) + 编码内容
+ * json的首字节不会与版本字节冲突, 所以读取时可以同时兼容json格式, 方便两种格式并存时逐步切换
+ */
+public class CodecRedisSerializer<T> implements RedisSerializer<Object> {
+
+    private static final byte VERSION_1 = 0x01;
+
+    private static final byte TYPE_NULL = 0x00;
+
+    private static final byte TYPE_VALUE = 0x01;
+
+    private final CacheCodec<T> codec;
+
+    private final boolean binary;
+
+    private final GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer();
+
+    /**
+     * @param codec 编解码器
+     * @param binary 写入时是否使用二进制格式, 否则写入json
+     */
+    public CodecRedisSerializer(CacheCodec<T> codec, boolean binary) {
+        this.codec = codec;
+        this.binary = binary;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] serialize(Object target) throws SerializationException {
+        if (!binary) {
+            return jsonSerializer.serialize(target);
+        }
+        if (target == null) {
+            return new byte[0];
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION_1);
+            if (target instanceof NullValue) {
+                out.writeByte(TYPE_NULL);
+            } else {
+                out.writeByte(TYPE_VALUE);
+                codec.encode((T) target, out);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Could not encode: " + target, e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != VERSION_1) {
+            return jsonSerializer.deserialize(bytes);
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+            if (in.readByte() == TYPE_NULL) {
+                return NullValue.INSTANCE;
+            }
+            return codec.decode(in);
+        } catch (IOException e) {
+            throw new SerializationException("Could not decode binary cache value", e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package win.scolia.cloud.sso.util.cache.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * 编解码时使用的工具方法, 可以为null的字段先写入一个标记字节
+ */
+final class Codecs {
+
+    private Codecs() {
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void writeLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    static Long readLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    static void writeDate(DataOutput out, Date value) throws IOException {
+        writeLong(out, value == null ? null : value.getTime());
+    }
+
+    static Date readDate(DataInput in) throws IOException {
+        Long time = readLong(in);
+        return time == null ? null : new Date(time);
+    }
+}
@@ -0,0 +1,26 @@
+package win.scolia.cloud.sso.util.cache.codec;
+
+import win.scolia.cloud.sso.bean.entity.Permission;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class PermissionCodec implements CacheCodec<Permission> {
+
+    @Override
+    public void encode(Permission target, DataOutput out) throws IOException {
+        Codecs.writeLong(out, target.getPermissionId());
+        Codecs.writeString(out, target.getPermission());
+        Codecs.writeDate(out, target.getCreateTime());
+        Codecs.writeDate(out, target.getLastModified());
+    }
+
+    @Override
+    public Permission decode(DataInput in) throws IOException {
+        Permission permission = new Permission(Codecs.readLong(in), Codecs.readString(in));
+        permission.setCreateTime(Codecs.readDate(in));
+        permission.setLastModified(Codecs.readDate(in));
+        return permission;
+    }
+}
@@ -0,0 +1,26 @@
+package win.scolia.cloud.sso.util.cache.codec;
+
+import win.scolia.cloud.sso.bean.entity.Role;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class RoleCodec implements CacheCodec<Role> {
+
+    @Override
+    public void encode(Role target, DataOutput out) throws IOException {
+        Codecs.writeLong(out, target.getRoleId());
+        Codecs.writeString(out, target.getRoleName());
+        Codecs.writeDate(out, target.getCreateTime());
+        Codecs.writeDate(out, target.getLastModified());
+    }
+
+    @Override
+    public Role decode(DataInput in) throws IOException {
+        Role role = new Role(Codecs.readLong(in), Codecs.readString(in));
+        role.setCreateTime(Codecs.readDate(in));
+        role.setLastModified(Codecs.readDate(in));
+        return role;
+    }
+}
@@ -0,0 +1,31 @@
+package win.scolia.cloud.sso.util.cache.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 用于 用户-角色 和 角色-权限 这类字符串集合
+ */
+public class StringSetCodec implements CacheCodec<Set<String>> {
+
+    @Override
+    public void encode(Set<String> target, DataOutput out) throws IOException {
+        out.writeInt(target.size());
+        for (String value : target) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Override
+    public Set<String> decode(DataInput in) throws IOException {
+        int size = in.readInt();
+        Set<String> set = new HashSet<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            set.add(in.readUTF());
+        }
+        return set;
+    }
+}
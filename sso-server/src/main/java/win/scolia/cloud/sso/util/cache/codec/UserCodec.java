@@ -0,0 +1,32 @@
+package win.scolia.cloud.sso.util.cache.codec;
+
+import win.scolia.cloud.sso.bean.entity.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class UserCodec implements CacheCodec<User> {
+
+    @Override
+    public void encode(User target, DataOutput out) throws IOException {
+        Codecs.writeLong(out, target.getUserId());
+        Codecs.writeString(out, target.getUserName());
+        Codecs.writeString(out, target.getPassword());
+        Codecs.writeString(out, target.getSalt());
+        Codecs.writeDate(out, target.getCreateTime());
+        Codecs.writeDate(out, target.getLastModified());
+    }
+
+    @Override
+    public User decode(DataInput in) throws IOException {
+        User user = new User();
+        user.setUserId(Codecs.readLong(in));
+        user.setUserName(Codecs.readString(in));
+        user.setPassword(Codecs.readString(in));
+        user.setSalt(Codecs.readString(in));
+        user.setCreateTime(Codecs.readDate(in));
+        user.setLastModified(Codecs.readDate(in));
+        return user;
+    }
+}
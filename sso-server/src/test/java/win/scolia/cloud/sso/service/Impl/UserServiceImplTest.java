@@ -0,0 +1,225 @@
+package win.scolia.cloud.sso.service.Impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import win.scolia.cloud.sso.autoconfigure.SSOProperties;
+import win.scolia.cloud.sso.bean.entity.User;
+import win.scolia.cloud.sso.bean.vo.entry.UserEntry;
+import win.scolia.cloud.sso.dao.UserMapper;
+import win.scolia.cloud.sso.dao.UserRoleMapper;
+import win.scolia.cloud.sso.shiro.SSOAuthorizationInfo;
+import win.scolia.cloud.sso.util.EncryptUtils;
+import win.scolia.cloud.sso.util.cache.AuthorizationCacheUtils;
+import win.scolia.cloud.sso.util.cache.CacheValue;
+import win.scolia.cloud.sso.util.cache.UserCacheUtils;
+import win.scolia.cloud.sso.util.cache.UserPermissionCacheUtils;
+import win.scolia.cloud.sso.util.cache.UserRoleCacheUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 删除用户后重新创建同名用户, 不能继承旧用户缓存的角色, 权限和鉴权信息
+ * 数据库和缓存都使用内存中的实现
+ */
+public class UserServiceImplTest {
+
+    private final Map<String, User> users = new HashMap<>();
+
+    private final FakeUserCache userCache = new FakeUserCache();
+
+    private final FakeUserRoleCache userRoleCache = new FakeUserRoleCache();
+
+    private final FakeUserPermissionCache userPermissionCache = new FakeUserPermissionCache();
+
+    private final FakeAuthorizationCache authorizationCache = new FakeAuthorizationCache();
+
+    private final UserServiceImpl userService = new UserServiceImpl();
+
+    private long nextId = 1;
+
+    @Before
+    public void setUp() throws Exception {
+        SSOProperties properties = new SSOProperties();
+        properties.setEncrypt(new SSOProperties.Encrypt());
+        EncryptUtils encryptUtils = new EncryptUtils();
+        inject(encryptUtils, "properties", properties);
+        inject(userService, "userMapper", this.createUserMapper());
+        inject(userService, "userRoleMapper", Proxy.newProxyInstance(this.getClass().getClassLoader(),
+                new Class<?>[]{UserRoleMapper.class}, (proxy, method, args) -> {
+                    if ("delete".equals(method.getName())) {
+                        return 0;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }));
+        inject(userService, "userCacheUtils", userCache);
+        inject(userService, "userRoleCacheUtils", userRoleCache);
+        inject(userService, "userPermissionCacheUtils", userPermissionCache);
+        inject(userService, "authorizationCacheUtils", authorizationCache);
+        inject(userService, "encryptUtils", encryptUtils);
+    }
+
+    @Test
+    public void testRecreateDoesNotInheritCaches() {
+        userService.createUser(this.newEntry("alice"));
+        Long oldId = userService.getUserByUserName("alice").getUserId();
+        userRoleCache.cache("alice", Collections.singleton("admin"));
+        userPermissionCache.cache("alice", Collections.singleton("system:*"));
+        authorizationCache.cache("alice", new SSOAuthorizationInfo());
+
+        userService.removeUserByUserName("alice");
+        assertNull(userService.getUserByUserName("alice"));
+        userService.createUser(this.newEntry("ALICE"));
+
+        User user = userService.getUserByUserName("alice");
+        assertNotNull(user);
+        assertEquals(Long.valueOf(oldId + 1), user.getUserId());
+        assertNull(userRoleCache.get("alice"));
+        assertNull(userPermissionCache.get("alice"));
+        assertNull(authorizationCache.get("alice"));
+    }
+
+    private UserEntry newEntry(String userName) {
+        UserEntry entry = new UserEntry();
+        entry.setUserName(userName);
+        entry.setPassword("password");
+        return entry;
+    }
+
+    private UserMapper createUserMapper() {
+        return (UserMapper) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class<?>[]{UserMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "selectOne":
+                            return users.get(((User) args[0]).getUserName().toUpperCase());
+                        case "insert":
+                            User record = (User) args[0];
+                            record.setUserId(nextId++);
+                            users.put(record.getUserName().toUpperCase(), record);
+                            return 1;
+                        case "deleteByPrimaryKey":
+                            Long userId = ((User) args[0]).getUserId();
+                            return users.values().removeIf(u -> u.getUserId().equals(userId)) ? 1 : 0;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static void inject(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static class FakeUserCache extends UserCacheUtils {
+
+        private final Map<String, CacheValue<User>> values = new HashMap<>();
+
+        @Override
+        public CacheValue<User> getValue(String key) {
+            return values.get(key.toUpperCase());
+        }
+
+        @Override
+        public User get(String key) {
+            CacheValue<User> value = values.get(key.toUpperCase());
+            return value == null ? null : value.get();
+        }
+
+        @Override
+        public User get(String key, Supplier<User> loader) {
+            CacheValue<User> value = values.get(key.toUpperCase());
+            if (value != null) {
+                return value.get();
+            }
+            User user = loader.get();
+            this.cache(key, user);
+            return user;
+        }
+
+        @Override
+        public void cache(String key, User target) {
+            values.put(key.toUpperCase(), CacheValue.of(target));
+        }
+
+        @Override
+        public void refresh(String key, Supplier<User> loader) {
+            this.cache(key, loader.get());
+        }
+
+        @Override
+        public void delete(String key) {
+            values.remove(key.toUpperCase());
+        }
+    }
+
+    private static class FakeUserRoleCache extends UserRoleCacheUtils {
+
+        private final Map<String, Set<String>> values = new HashMap<>();
+
+        @Override
+        public Set<String> get(String key) {
+            return values.get(key.toUpperCase());
+        }
+
+        @Override
+        public void cache(String key, Set<String> target) {
+            values.put(key.toUpperCase(), target);
+        }
+
+        @Override
+        public void delete(String key) {
+            values.remove(key.toUpperCase());
+        }
+    }
+
+    private static class FakeUserPermissionCache extends UserPermissionCacheUtils {
+
+        private final Map<String, Set<String>> values = new HashMap<>();
+
+        @Override
+        public Set<String> get(String key) {
+            return values.get(key.toUpperCase());
+        }
+
+        @Override
+        public void cache(String key, Set<String> target) {
+            values.put(key.toUpperCase(), target);
+        }
+
+        @Override
+        public void delete(String key) {
+            values.remove(key.toUpperCase());
+        }
+    }
+
+    private static class FakeAuthorizationCache extends AuthorizationCacheUtils {
+
+        private final Map<String, SSOAuthorizationInfo> values = new HashMap<>();
+
+        @Override
+        public SSOAuthorizationInfo get(String key) {
+            return values.get(key.toUpperCase());
+        }
+
+        @Override
+        public void cache(String key, SSOAuthorizationInfo target) {
+            values.put(key.toUpperCase(), target);
+        }
+
+        @Override
+        public void delete(String key) {
+            values.remove(key.toUpperCase());
+        }
+    }
+}
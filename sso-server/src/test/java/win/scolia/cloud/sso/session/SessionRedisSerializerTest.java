@@ -0,0 +1,68 @@
+package win.scolia.cloud.sso.session;
+
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.junit.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+import win.scolia.cloud.sso.shiro.SSOPrincipal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 二进制格式与jdk格式的读写, 以及过长字符串和白名单的处理
+ */
+public class SessionRedisSerializerTest {
+
+    private static final List<String> WHITELIST = Arrays.asList("java.lang.", "org.apache.shiro.", "win.scolia.cloud.sso.");
+
+    private final SessionRedisSerializer binary = new SessionRedisSerializer(true, WHITELIST,
+            this.getClass().getClassLoader());
+
+    private final SessionRedisSerializer jdk = new SessionRedisSerializer(false, WHITELIST,
+            this.getClass().getClassLoader());
+
+    @Test
+    public void testRoundTrip() {
+        for (Object value : Arrays.asList("value", "", 42L, 7, true)) {
+            assertEquals(value, binary.deserialize(binary.serialize(value)));
+            assertEquals(value, binary.deserialize(jdk.serialize(value)));
+            assertEquals(value, jdk.deserialize(binary.serialize(value)));
+        }
+        assertNull(binary.deserialize(binary.serialize(null)));
+    }
+
+    @Test
+    public void testPrincipals() {
+        PrincipalCollection principals = new SimplePrincipalCollection(new SSOPrincipal(1L, "admin", 3L), "realm");
+        PrincipalCollection result = (PrincipalCollection) binary.deserialize(binary.serialize(principals));
+        SSOPrincipal principal = (SSOPrincipal) result.getPrimaryPrincipal();
+        assertEquals(Long.valueOf(1L), principal.getUserId());
+        assertEquals("admin", principal.getUserName());
+        assertEquals(3L, principal.getAuthzVersion());
+        assertEquals(Collections.singleton("realm"), result.getRealmNames());
+    }
+
+    @Test
+    public void testLongString() {
+        String value = String.join("", Collections.nCopies(70000, "中"));
+        assertEquals(value, binary.deserialize(binary.serialize(value)));
+        String ascii = String.join("", Collections.nCopies(70000, "a"));
+        assertEquals(ascii, binary.deserialize(binary.serialize(ascii)));
+    }
+
+    @Test(expected = SerializationException.class)
+    public void testRejectClass() {
+        binary.deserialize(binary.serialize(new HashMap<String, String>()));
+    }
+
+    @Test(expected = SerializationException.class)
+    public void testUnknownFormat() {
+        binary.deserialize(new byte[]{0x09, 0x01});
+    }
+}
@@ -0,0 +1,93 @@
+package win.scolia.cloud.sso.session;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 白名单之外的类, 数组元素和动态代理的接口都必须被拒绝
+ */
+public class WhitelistObjectInputStreamTest {
+
+    private static final List<String> WHITELIST = Arrays.asList("java.lang.", "win.scolia.cloud.sso.");
+
+    @Test
+    public void testAllowed() throws Exception {
+        assertEquals("value", this.read(this.write("value")));
+        assertEquals(42L, this.read(this.write(42L)));
+        assertArrayEquals(new String[]{"a", "b"}, (String[]) this.read(this.write(new String[]{"a", "b"})));
+        assertArrayEquals(new int[]{1, 2}, (int[]) this.read(this.write(new int[]{1, 2})));
+        assertArrayEquals(new long[][]{{1L}}, (long[][]) this.read(this.write(new long[][]{{1L}})));
+    }
+
+    @Test(expected = InvalidClassException.class)
+    public void testRejectClass() throws Exception {
+        this.read(this.write(new HashMap<String, String>()));
+    }
+
+    @Test(expected = InvalidClassException.class)
+    public void testRejectNestedClass() throws Exception {
+        this.read(this.write(new Object[]{"value", new ArrayList<String>()}));
+    }
+
+    @Test(expected = InvalidClassException.class)
+    public void testRejectArray() throws Exception {
+        this.read(this.write(new HashMap[0][0]));
+    }
+
+    @Test
+    public void testAllowedProxy() throws Exception {
+        Object proxy = Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class<?>[]{Runnable.class},
+                new Handler());
+        assertTrue(this.read(this.write(proxy)) instanceof Runnable);
+    }
+
+    @Test(expected = InvalidClassException.class)
+    public void testRejectProxy() throws Exception {
+        Object proxy = Proxy.newProxyInstance(this.getClass().getClassLoader(),
+                new Class<?>[]{Runnable.class, Comparator.class}, new Handler());
+        this.read(this.write(proxy));
+    }
+
+    private byte[] write(Object target) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(target);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Object read(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (WhitelistObjectInputStream in = new WhitelistObjectInputStream(new ByteArrayInputStream(bytes),
+                WHITELIST, this.getClass().getClassLoader())) {
+            return in.readObject();
+        }
+    }
+
+    private static class Handler implements InvocationHandler, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            return null;
+        }
+    }
+}
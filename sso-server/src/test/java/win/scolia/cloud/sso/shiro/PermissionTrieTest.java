@@ -0,0 +1,101 @@
+package win.scolia.cloud.sso.shiro;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.permission.PermissionResolver;
+import org.apache.shiro.authz.permission.WildcardPermission;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 前缀树的检查结果必须与shiro的 WildcardPermission 逐个检查的结果完全一致
+ */
+public class PermissionTrieTest {
+
+    private static final String[] TOKENS = {"system", "user", "role", "get", "add", "delete", "*", "Get"};
+
+    private final PermissionResolver resolver = SSOWildcardPermission::new;
+
+    @Test
+    public void testExplicitCases() {
+        PermissionTrie trie = PermissionTrie.compile(Arrays.asList("system:user", "system:role:get,add", "doc:*:read"),
+                resolver);
+        assertTrue(this.implies(trie, "system:user"));
+        assertTrue(this.implies(trie, "system:user:delete"));
+        assertTrue(this.implies(trie, "system:role:get"));
+        assertTrue(this.implies(trie, "system:role:add"));
+        assertTrue(this.implies(trie, "SYSTEM:ROLE:GET"));
+        assertTrue(this.implies(trie, "system:role:get,add"));
+        assertTrue(this.implies(trie, "doc:any:read"));
+        assertFalse(this.implies(trie, "system:role:delete"));
+        assertFalse(this.implies(trie, "system:role"));
+        assertFalse(this.implies(trie, "system:*"));
+        assertFalse(this.implies(trie, "doc:any:write"));
+        assertFalse(this.implies(trie, "doc:any"));
+    }
+
+    @Test
+    public void testEmpty() {
+        PermissionTrie trie = PermissionTrie.compile(Collections.emptyList(), resolver);
+        assertFalse(this.implies(trie, "system:user"));
+        assertEquals(0, trie.size());
+    }
+
+    @Test
+    public void testSameAsWildcardPermission() {
+        Random random = new Random(20171029L);
+        for (int round = 0; round < 2000; round++) {
+            List<String> owned = new ArrayList<>();
+            int size = random.nextInt(6);
+            for (int i = 0; i < size; i++) {
+                owned.add(this.randomPermission(random));
+            }
+            PermissionTrie trie = PermissionTrie.compile(owned, resolver);
+            for (int i = 0; i < 50; i++) {
+                String checked = this.randomPermission(random);
+                boolean expected = false;
+                for (String permission : owned) {
+                    if (new WildcardPermission(permission).implies(new WildcardPermission(checked))) {
+                        expected = true;
+                        break;
+                    }
+                }
+                assertEquals(owned + " implies " + checked, expected, this.implies(trie, checked));
+            }
+        }
+    }
+
+    private boolean implies(PermissionTrie trie, String permission) {
+        Permission target = resolver.resolvePermission(permission);
+        return trie.implies(target);
+    }
+
+    /**
+     * 1到4段, 每段1到2个子项, 包括通配符和大小写不同的子项
+     */
+    private String randomPermission(Random random) {
+        StringBuilder builder = new StringBuilder();
+        int parts = 1 + random.nextInt(4);
+        for (int i = 0; i < parts; i++) {
+            if (i > 0) {
+                builder.append(':');
+            }
+            int tokens = random.nextInt(5) == 0 ? 2 : 1;
+            for (int j = 0; j < tokens; j++) {
+                if (j > 0) {
+                    builder.append(',');
+                }
+                builder.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+        }
+        return builder.toString();
+    }
+}
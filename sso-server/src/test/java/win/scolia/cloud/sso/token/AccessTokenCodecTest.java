@@ -0,0 +1,108 @@
+package win.scolia.cloud.sso.token;
+
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 令牌的签名和验证, 包括篡改/过期/密钥不同/格式错误
+ */
+public class AccessTokenCodecTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    private static final long NOW = 1700000000L;
+
+    private final AccessTokenCodec codec = new AccessTokenCodec(SECRET);
+
+    private AccessToken newToken() {
+        return new AccessToken("token-id", 7L, "admin", new HashSet<>(Arrays.asList("admin", "user")), 42L,
+                NOW - 3600, NOW, NOW + 900);
+    }
+
+    @Test
+    public void testRoundTrip() {
+        AccessToken token = codec.decode(codec.encode(this.newToken()), NOW + 1);
+        assertNotNull(token);
+        assertEquals("token-id", token.getTokenId());
+        assertEquals(Long.valueOf(7L), token.getUserId());
+        assertEquals("admin", token.getUserName());
+        assertEquals(new HashSet<>(Arrays.asList("admin", "user")), token.getRoles());
+        assertEquals(42L, token.getPermissionVersion());
+        assertEquals(NOW - 3600, token.getAuthenticatedAt());
+        assertEquals(NOW, token.getIssuedAt());
+        assertEquals(NOW + 900, token.getExpiresAt());
+    }
+
+    @Test
+    public void testNullUserId() {
+        AccessToken token = new AccessToken("id", null, "admin", null, 0L, NOW, NOW, NOW + 900);
+        AccessToken decoded = codec.decode(codec.encode(token), NOW);
+        assertNotNull(decoded);
+        assertNull(decoded.getUserId());
+        assertEquals(0, decoded.getRoles().size());
+    }
+
+    @Test
+    public void testExpired() {
+        String value = codec.encode(this.newToken());
+        assertNotNull(codec.decode(value, NOW + 899));
+        assertNull(codec.decode(value, NOW + 900));
+    }
+
+    @Test
+    public void testTampered() {
+        String value = codec.encode(this.newToken());
+        int index = value.indexOf('.');
+        byte[] payload = Base64.getUrlDecoder().decode(value.substring(0, index));
+        payload[payload.length - 1] ^= 1;
+        String tampered = Base64.getUrlEncoder().withoutPadding().encodeToString(payload) + value.substring(index);
+        assertNull(codec.decode(tampered, NOW));
+        String resigned = value.substring(0, index + 1) + Base64.getUrlEncoder().withoutPadding().encodeToString(new byte[32]);
+        assertNull(codec.decode(resigned, NOW));
+    }
+
+    @Test
+    public void testWrongSecret() {
+        String value = new AccessTokenCodec("fedcba9876543210fedcba9876543210").encode(this.newToken());
+        assertNull(codec.decode(value, NOW));
+    }
+
+    @Test
+    public void testMalformed() {
+        assertNull(codec.decode(null, NOW));
+        assertNull(codec.decode("", NOW));
+        assertNull(codec.decode("abc", NOW));
+        assertNull(codec.decode(".abc", NOW));
+        assertNull(codec.decode("a.b.c", NOW));
+        assertNull(codec.decode("!!!.???", NOW));
+        assertNull(codec.decode(this.sign(new byte[]{2, 0}), NOW));
+        assertNull(codec.decode(this.sign(new byte[]{9}), NOW));
+        assertNull(codec.decode(this.sign(new byte[]{1, 0}), NOW));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortSecret() {
+        new AccessTokenCodec("short");
+    }
+
+    private String sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+            return encoder.encodeToString(payload) + "." + encoder.encodeToString(mac.doFinal(payload));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package win.scolia.cloud.sso.util.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 容量满时淘汰最久未访问的条目, 以及过期和失效
+ */
+public class NearCacheTest {
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        NearCache<String> cache = new NearCache<>(2, 60);
+        cache.put("A", "a");
+        cache.put("B", "b");
+        assertEquals("a", cache.get("A"));
+        cache.put("C", "c");
+        assertEquals(2, cache.size());
+        assertEquals("a", cache.get("A"));
+        assertNull(cache.get("B"));
+        assertEquals("c", cache.get("C"));
+    }
+
+    @Test
+    public void testReplace() {
+        NearCache<String> cache = new NearCache<>(2, 60);
+        cache.put("A", "a");
+        cache.put("B", "b");
+        cache.put("A", "a2");
+        assertEquals(2, cache.size());
+        assertEquals("a2", cache.get("A"));
+        assertEquals("b", cache.get("B"));
+    }
+
+    @Test
+    public void testExpireAndInvalidate() {
+        NearCache<String> expired = new NearCache<>(2, 0);
+        expired.put("A", "a");
+        assertNull(expired.get("A"));
+        assertEquals(0, expired.size());
+
+        NearCache<String> cache = new NearCache<>(2, 60);
+        cache.put("A", "a");
+        cache.put("B", "b");
+        cache.invalidate("A");
+        assertNull(cache.get("A"));
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,150 @@
+package win.scolia.cloud.sso.util.cache.codec;
+
+import org.junit.Test;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.SerializationException;
+import win.scolia.cloud.sso.bean.entity.Permission;
+import win.scolia.cloud.sso.bean.entity.Role;
+import win.scolia.cloud.sso.bean.entity.User;
+import win.scolia.cloud.sso.shiro.SSOAuthorizationInfo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 每种编解码器的读写, 空值标记, 可以为null的字段, 以及读取旧的json格式
+ */
+public class CodecRedisSerializerTest {
+
+    private static final Date CREATE_TIME = new Date(1700000000000L);
+
+    private static final Date LAST_MODIFIED = new Date(1700000600000L);
+
+    private static final Set<String> ROLES = new HashSet<>(Arrays.asList("admin", "user", "角色"));
+
+    private static final Set<String> PERMISSIONS = new HashSet<>(Arrays.asList("system:*", "user:list", "user:add"));
+
+    private final CodecRedisSerializer<User> userBinary = new CodecRedisSerializer<>(new UserCodec(), true);
+
+    private final CodecRedisSerializer<User> userJson = new CodecRedisSerializer<>(new UserCodec(), false);
+
+    private final CodecRedisSerializer<Set<String>> setBinary = new CodecRedisSerializer<>(new StringSetCodec(), true);
+
+    private final CodecRedisSerializer<Set<String>> setJson = new CodecRedisSerializer<>(new StringSetCodec(), false);
+
+    private User newUser() {
+        User user = new User("admin", "password-hash", "salt");
+        user.setUserId(7L);
+        user.setCreateTime(CREATE_TIME);
+        user.setLastModified(LAST_MODIFIED);
+        return user;
+    }
+
+    private SSOAuthorizationInfo newAuthorizationInfo() {
+        SSOAuthorizationInfo info = new SSOAuthorizationInfo();
+        info.setRoles(ROLES);
+        info.setStringPermissions(PERMISSIONS);
+        return info;
+    }
+
+    private void assertUser(User expected, Object actual) {
+        User user = (User) actual;
+        assertEquals(expected.getUserId(), user.getUserId());
+        assertEquals(expected.getUserName(), user.getUserName());
+        assertEquals(expected.getPassword(), user.getPassword());
+        assertEquals(expected.getSalt(), user.getSalt());
+        assertEquals(expected.getCreateTime(), user.getCreateTime());
+        assertEquals(expected.getLastModified(), user.getLastModified());
+    }
+
+    @Test
+    public void testUser() {
+        User user = this.newUser();
+        this.assertUser(user, userBinary.deserialize(userBinary.serialize(user)));
+        User empty = new User();
+        this.assertUser(empty, userBinary.deserialize(userBinary.serialize(empty)));
+    }
+
+    @Test
+    public void testRole() {
+        CodecRedisSerializer<Role> serializer = new CodecRedisSerializer<>(new RoleCodec(), true);
+        Role role = new Role(3L, "admin");
+        role.setCreateTime(CREATE_TIME);
+        Role result = (Role) serializer.deserialize(serializer.serialize(role));
+        assertEquals(Long.valueOf(3L), result.getRoleId());
+        assertEquals("admin", result.getRoleName());
+        assertEquals(CREATE_TIME, result.getCreateTime());
+        assertNull(result.getLastModified());
+    }
+
+    @Test
+    public void testPermission() {
+        CodecRedisSerializer<Permission> serializer = new CodecRedisSerializer<>(new PermissionCodec(), true);
+        Permission permission = new Permission(5L, "user:list");
+        permission.setLastModified(LAST_MODIFIED);
+        Permission result = (Permission) serializer.deserialize(serializer.serialize(permission));
+        assertEquals(Long.valueOf(5L), result.getPermissionId());
+        assertEquals("user:list", result.getPermission());
+        assertNull(result.getCreateTime());
+        assertEquals(LAST_MODIFIED, result.getLastModified());
+    }
+
+    @Test
+    public void testStringSet() {
+        assertEquals(ROLES, setBinary.deserialize(setBinary.serialize(ROLES)));
+        assertEquals(Collections.emptySet(), setBinary.deserialize(setBinary.serialize(Collections.emptySet())));
+    }
+
+    @Test
+    public void testAuthorizationInfo() {
+        CodecRedisSerializer<SSOAuthorizationInfo> serializer = new CodecRedisSerializer<>(new AuthorizationInfoCodec(), true);
+        SSOAuthorizationInfo result = (SSOAuthorizationInfo) serializer.deserialize(
+                serializer.serialize(this.newAuthorizationInfo()));
+        assertEquals(ROLES, result.getRoles());
+        assertEquals(PERMISSIONS, result.getStringPermissions());
+        SSOAuthorizationInfo empty = (SSOAuthorizationInfo) serializer.deserialize(
+                serializer.serialize(new SSOAuthorizationInfo()));
+        assertTrue(empty.getRoles().isEmpty());
+        assertTrue(empty.getStringPermissions().isEmpty());
+    }
+
+    @Test
+    public void testNullValue() {
+        assertSame(NullValue.INSTANCE, userBinary.deserialize(userBinary.serialize(NullValue.INSTANCE)));
+        assertSame(NullValue.INSTANCE, setBinary.deserialize(setBinary.serialize(NullValue.INSTANCE)));
+        // json读出的是新的实例, 缓存使用instanceof判断
+        assertTrue(userBinary.deserialize(userJson.serialize(NullValue.INSTANCE)) instanceof NullValue);
+        assertEquals(0, userBinary.serialize(null).length);
+        assertNull(userBinary.deserialize(null));
+        assertNull(userBinary.deserialize(new byte[0]));
+    }
+
+    @Test
+    public void testJsonFallback() {
+        User user = this.newUser();
+        this.assertUser(user, userBinary.deserialize(userJson.serialize(user)));
+        this.assertUser(user, userJson.deserialize(userBinary.serialize(user)));
+        assertEquals(ROLES, setBinary.deserialize(setJson.serialize(ROLES)));
+    }
+
+    @Test
+    public void testSize() {
+        // 二进制格式不带类型信息和字段名, 应小于json
+        assertTrue(userBinary.serialize(this.newUser()).length < userJson.serialize(this.newUser()).length);
+        assertTrue(setBinary.serialize(ROLES).length < setJson.serialize(ROLES).length);
+    }
+
+    @Test(expected = SerializationException.class)
+    public void testTruncated() {
+        byte[] bytes = userBinary.serialize(this.newUser());
+        userBinary.deserialize(Arrays.copyOf(bytes, bytes.length - 3));
+    }
+}